@@ -0,0 +1,122 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util;
+
+import com.google.common.base.Splitter;
+
+import javax.ws.rs.HttpMethod;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Opt-in warm-up of the connections of the job, run in the background when {@link Hops} is set up so that the first
+ * REST call does not pay for DNS resolution, the TLS handshake and the loading of the truststore.
+ * <p>
+ * The hopsutil.warmup system property lists what to warm up, comma separated:
+ * <ul>
+ *   <li>rest, the REST transport is created and hopsutil.warmup.connections requests (1 by default) are sent in
+ *   parallel, leaving that many connections to Hopsworks open in the pool.</li>
+ *   <li>kafka and elastic, the broker and Elastic host names are resolved and connected to. Kafka clients and the
+ *   Elastic connectors open their own connections, so this warms the DNS cache and the network path only.</li>
+ * </ul>
+ */
+final class ConnectionWarmup {
+
+  private static final Logger LOG = Logger.getLogger(ConnectionWarmup.class.getName());
+
+  private static final int CONNECT_TIMEOUT_MS = 2000;
+
+  private ConnectionWarmup() {
+  }
+
+  /**
+   * Start the warm-up configured with the hopsutil.warmup system property, if any.
+   */
+  static void start() {
+    String targets = System.getProperty(Constants.HOPSUTIL_WARMUP);
+    if (targets == null || targets.trim().isEmpty()) {
+      return;
+    }
+    List<String> list = Splitter.on(',').trimResults().omitEmptyStrings().splitToList(
+      targets.toLowerCase(Locale.ENGLISH));
+    Thread thread = new Thread(() -> run(list), "hops-warmup");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  private static void run(List<String> targets) {
+    long start = System.currentTimeMillis();
+    if (targets.contains("kafka") && Hops.getBrokerEndpointsList() != null) {
+      for (String broker : Hops.getBrokerEndpointsList()) {
+        connect(broker);
+      }
+    }
+    if (targets.contains("elastic") && Hops.getElasticEndPoint() != null) {
+      connect(Hops.getElasticEndPoint());
+    }
+    if (targets.contains("rest")) {
+      warmRest(Integer.getInteger(Constants.HOPSUTIL_WARMUP_CONNECTIONS, 1));
+    }
+    LOG.log(Level.FINE, "Warmed up {0} in {1} ms", new Object[]{targets, System.currentTimeMillis() - start});
+  }
+
+  private static void warmRest(int connections) {
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, connections));
+    try {
+      List<CompletableFuture<Void>> requests = new ArrayList<>();
+      for (int i = 0; i < Math.max(1, connections); i++) {
+        requests.add(CompletableFuture.runAsync(() -> {
+          try {
+            //Any response leaves a connection with a completed handshake in the pool
+            Hops.execute(HttpMethod.GET, "/project/getProjectInfo/" + Hops.getProjectName(), null,
+              Collections.emptyMap(), null);
+          } catch (Exception e) {
+            LOG.log(Level.FINE, "REST warm-up request failed", e);
+          }
+        }, executor));
+      }
+      CompletableFuture.allOf(requests.toArray(new CompletableFuture[0])).join();
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Resolve and connect to host:port.
+   */
+  private static void connect(String endpoint) {
+    String address = endpoint.contains("://") ? endpoint.substring(endpoint.indexOf("://") + 3) : endpoint;
+    int colon = address.lastIndexOf(':');
+    if (colon < 0) {
+      return;
+    }
+    try (Socket socket = new Socket()) {
+      InetAddress host = InetAddress.getByName(address.substring(0, colon));
+      socket.connect(new InetSocketAddress(host, Integer.parseInt(address.substring(colon + 1).replace("/", ""))),
+        CONNECT_TIMEOUT_MS);
+    } catch (Exception e) {
+      LOG.log(Level.FINE, "Warm-up connection to " + endpoint + " failed", e);
+    }
+  }
+}
@@ -54,6 +54,26 @@ public class Constants {
   public static final String T_CERTIFICATE_ENV_VAR = "t_certificate";
   public static final String HOPSWORKS_RESTENDPOINT = "hopsworks.restendpoint";
   public static final String HOPSUTIL_INSECURE = "hopsutil.insecure";
+  public static final String HOPSUTIL_CRYPTO_RELOAD = "hopsutil.crypto.reload";
+  public static final String HOPSUTIL_REST_TRANSPORT = "hopsutil.rest.transport";
+  //Connections warmed up in the background at setup, comma separated: rest, kafka, elastic
+  public static final String HOPSUTIL_WARMUP = "hopsutil.warmup";
+  public static final String HOPSUTIL_WARMUP_CONNECTIONS = "hopsutil.warmup.connections";
+  //Set by GraalVM to buildtime or runtime when the code runs in a native image
+  public static final String GRAALVM_IMAGE_CODE = "org.graalvm.nativeimage.imagecode";
+  public static final String HOPSUTIL_REST_COMPRESSION = "hopsutil.rest.compression";
+  public static final String HOPSUTIL_REST_COMPRESSION_THRESHOLD = "hopsutil.rest.compression.threshold";
+  public static final String HOPSUTIL_REST_RATELIMIT_PERMITS = "hopsutil.rest.ratelimit.permits";
+  public static final String HOPSUTIL_REST_RATELIMIT_RETRIES = "hopsutil.rest.ratelimit.retries";
+  public static final String HOPSUTIL_REST_STARTUP_SPREAD_MS = "hopsutil.rest.startup.spread.ms";
+  public static final String HOPSUTIL_REST_BATCH_PARALLELISM = "hopsutil.rest.batch.parallelism";
+  public static final String HOPSUTIL_CREDENTIALS_REFRESH_MARGIN_S = "hopsutil.credentials.refresh.margin.s";
+  //Also export assumed credentials as AWS_* environment variables, by modifying the environment of the JVM
+  public static final String HOPSUTIL_CREDENTIALS_LEGACY_ENV = "hopsutil.credentials.legacy.env";
+  public static final String HOPSUTIL_REST_CACHE_SIZE = "hopsutil.rest.cache.size";
+  public static final String HOPSUTIL_REST_CACHE_TTL_MS = "hopsutil.rest.cache.ttl.ms";
+  //How long parsed topic schemas and stored dataset schemas are reused before they are read again
+  public static final String HOPSUTIL_SCHEMA_CACHE_TTL_MS = "hopsutil.schema.cache.ttl.ms";
   public static final String JOBNAME_ENV_VAR = "hopsworks.job.name";
   public static final String APPID_ENV_VAR = "hopsworks.job.appid";
   public static final String PROJECTNAME_ENV_VAR = "hopsworks.projectname";
@@ -62,6 +82,8 @@ public class Constants {
   public static final String ELASTIC_ENDPOINT_ENV_VAR = "hopsworks.elastic.endpoint";
   public static final String KAFKA_CONSUMER_GROUPS = "hopsworks.kafka.consumergroups";
   public static final String KAFKA_BROKERADDR_ENV_VAR = "hopsworks.kafka.brokeraddress";
+  //Ordering of bootstrap brokers for clients created through Hops, none, latency or random
+  public static final String HOPSUTIL_KAFKA_BOOTSTRAP_STRATEGY = "hopsutil.kafka.bootstrap.strategy";
   public static final String SERVER_TRUSTSTORE_PROPERTY = "server.truststore";
   public static final String DOMAIN_CA_TRUSTSTORE = "hopsworks.domain.truststore";
   
@@ -89,6 +111,9 @@ public class Constants {
   public static final String SPARK_TF_CONNECTOR_RECORD_TYPE_EXAMPLE = "Example";
   public static final String SPARK_SQL_CATALOG_IMPLEMENTATION = "spark.sql.catalogImplementation";
   public static final String SPARK_SQL_CATALOG_HIVE = "hive";
+  public static final String SPARK_SQL_CATALOG_IN_MEMORY = "in-memory";
+  //Catalog used by findSpark when no session exists yet, hive or in-memory
+  public static final String HOPSUTIL_SPARK_CATALOG = "hopsutil.spark.catalog";
   
   //Hive Config
   public static final String PROJECT_STAGING_DIR = "Resources";
@@ -100,12 +125,28 @@ public class Constants {
   public static final String S3_SECRET_KEY_ENV = "fs.s3a.secret.key";
   public static final String S3_SESSION_KEY_ENV = "fs.s3a.session.token";
   public static final String S3_CREDENTIAL_PROVIDER_ENV = "fs.s3a.aws.credentials.provider";
+  //Per-bucket S3A settings, fs.s3a.bucket.<bucket>.<option without the fs.s3a. prefix>
+  public static final String S3_PREFIX = "fs.s3a.";
+  public static final String S3_BUCKET_PREFIX = "fs.s3a.bucket.";
   public static final String S3_TEMPORARY_CREDENTIAL_PROVIDER =
     "org.apache.hadoop.fs.s3a.TemporaryAWSCredentialsProvider";
+  //Role whose registered credentials RegistryCredentialsProvider returns, can be set per bucket
+  public static final String S3_REGISTRY_ROLE = "fs.s3a.hops.role";
   public static final String SPARK_IS_DRIVER_ENV = "IS_HOPS_DRIVER";
   public static final String AWS_ACCESS_KEY_ID_ENV = "AWS_ACCESS_KEY_ID";
   public static final String AWS_SECRET_ACCESS_KEY_ENV = "AWS_SECRET_ACCESS_KEY";
   public static final String AWS_SESSION_TOKEN_ENV = "AWS_SESSION_TOKEN";
+  //System properties read by the AWS SDK SystemPropertiesCredentialsProvider
+  public static final String AWS_ACCESS_KEY_ID_PROPERTY = "aws.accessKeyId";
+  public static final String AWS_SECRET_KEY_PROPERTY = "aws.secretKey";
+  public static final String AWS_SESSION_TOKEN_PROPERTY = "aws.sessionToken";
+
+  //Dataset upload/download
+  public static final String HOPSWORKS_REST_DATASET_RESOURCE = "dataset";
+  public static final String HOPSWORKS_REST_DATASET_UPLOAD_RESOURCE = "upload";
+  public static final String HOPSWORKS_REST_DATASET_DOWNLOAD_TOKEN_RESOURCE = "download/token";
+  public static final String HOPSWORKS_REST_DATASET_DOWNLOAD_RESOURCE = "download/with_auth";
+  public static final String HOPSWORKS_REST_DATASET_TYPE = "DATASET";
 
   public static final String HOPSWORKS_REST_ELASTIC_RESOURCE = "elastic";
   public static final String HOPSWORKS_REST_JWT_RESOURCE = "jwt";
@@ -0,0 +1,417 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util;
+
+import io.hops.util.cloud.CredentialRegistry;
+import io.hops.util.cloud.Credentials;
+import io.hops.util.exceptions.CloudCredentialException;
+import io.hops.util.exceptions.HTTPSClientInitializationException;
+import io.hops.util.exceptions.JWTNotFoundException;
+import org.apache.hadoop.conf.Configuration;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * AWS temporary credential provider.
+ */
+public class CredentialsProvider {
+  private static final Logger LOG = Logger.getLogger(CredentialsProvider.class.getName());
+  //Lifetime of the credentials when no duration is requested, the AWS default
+  private static final int DEFAULT_DURATION_SECONDS = 3600;
+  private static final int REFRESH_MARGIN_SECONDS =
+    Integer.getInteger(Constants.HOPSUTIL_CREDENTIALS_REFRESH_MARGIN_S, 300);
+  private static final Map<String, CompletableFuture<CachedCredentials>> CREDENTIALS_CACHE =
+    new ConcurrentHashMap<>();
+  
+  private CredentialsProvider() {
+  }
+  
+  /**
+   * Assume the default role if there exists a default role for the user in current project
+   * @return
+   * @throws CloudCredentialException
+   */
+  public static Credentials assumeRole() throws CloudCredentialException {
+    return assumeRole(null, null, 0);
+  }
+  
+  /**
+   * Get temporary credentials and set spark context hadoop configuration
+   * @param role
+   * @return Credentials
+   * @throws CloudCredentialException
+   */
+  public static Credentials assumeRole(String role) throws CloudCredentialException {
+    return assumeRole(role, null, 0);
+  }
+  
+  /**
+   * Get temporary credentials and set spark context hadoop configuration and system properties.
+   * @param role
+   * @param roleSessionName
+   * @param durationSeconds
+   * @return Credentials
+   * @throws CloudCredentialException
+   */
+  public static Credentials assumeRole(String role, String roleSessionName, int durationSeconds)
+    throws CloudCredentialException {
+    Credentials credentials = getCredentials(role, roleSessionName, durationSeconds);
+    setSparkHadoopConf(credentials);
+    setSystemProperties(role, credentials);
+    return credentials;
+  }
+
+  /**
+   * Get temporary credentials and set them in the spark context hadoop configuration of a single bucket, so that
+   * buckets accessed with different roles can be used at the same time. The global S3A settings and the system
+   * properties are left untouched.
+   * <p>
+   * S3A reads the per-bucket settings when the filesystem of the bucket is first created.
+   * @param bucket name of the bucket, without the s3a:// scheme
+   * @param role
+   * @param roleSessionName
+   * @param durationSeconds
+   * @return Credentials
+   * @throws CloudCredentialException
+   */
+  public static Credentials assumeRoleForBucket(String bucket, String role, String roleSessionName,
+    int durationSeconds) throws CloudCredentialException {
+    Credentials credentials = getCredentials(role, roleSessionName, durationSeconds);
+    setSparkHadoopConf(Constants.S3_BUCKET_PREFIX + bucket + ".", credentials);
+    return credentials;
+  }
+
+  /**
+   * Get temporary credentials for a role. Credentials are cached by role, session name and duration and only
+   * requested again from Hopsworks shortly before they expire. Concurrent callers of the same role share one request,
+   * and every caller gets its own copy of the credentials.
+   * @param role
+   * @param roleSessionName
+   * @param durationSeconds
+   * @return Credentials
+   * @throws CloudCredentialException
+   */
+  public static Credentials getCredentials(String role, String roleSessionName, int durationSeconds)
+    throws CloudCredentialException {
+    //The duration is part of the key, so a caller never gets credentials shorter lived than it asked for
+    String key = (role == null ? "" : role) + "|" + (roleSessionName == null ? "" : roleSessionName) + "|"
+      + Math.max(0, durationSeconds);
+    while (true) {
+      CompletableFuture<CachedCredentials> future = CREDENTIALS_CACHE.get(key);
+      if (future == null || isStale(future)) {
+        //Only the thread that installs the new future requests credentials, others wait for it. Refreshes of
+        //different roles do not block each other.
+        CompletableFuture<CachedCredentials> request = new CompletableFuture<>();
+        if (future == null ? CREDENTIALS_CACHE.putIfAbsent(key, request) != null
+          : !CREDENTIALS_CACHE.replace(key, future, request)) {
+          continue;
+        }
+        try {
+          request.complete(requestCachedCredentials(role, roleSessionName, durationSeconds));
+        } catch (CloudCredentialException | RuntimeException e) {
+          CREDENTIALS_CACHE.remove(key, request);
+          request.completeExceptionally(e);
+          throw e;
+        }
+        future = request;
+      }
+      try {
+        //Callers get their own copy, the cached instance is shared
+        return copy(future.get().credentials);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new CloudCredentialException("Interrupted while waiting for credentials");
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof CloudCredentialException) {
+          throw new CloudCredentialException(e.getCause().getMessage());
+        }
+        throw new IllegalStateException(e.getCause());
+      }
+    }
+  }
+
+  private static CachedCredentials requestCachedCredentials(String role, String roleSessionName, int durationSeconds)
+    throws CloudCredentialException {
+    long requestedAt = System.currentTimeMillis();
+    Credentials credentials = requestCredentials(role, roleSessionName, durationSeconds);
+    HopsClientMetrics.recordCredentialRefresh();
+    int lifetime = durationSeconds > 0 ? durationSeconds : DEFAULT_DURATION_SECONDS;
+    long refreshAt = requestedAt + TimeUnit.SECONDS.toMillis(Math.max(0, lifetime - REFRESH_MARGIN_SECONDS));
+    CredentialRegistry.put(role, credentials, false);
+    return new CachedCredentials(credentials, refreshAt);
+  }
+
+  private static boolean isStale(CompletableFuture<CachedCredentials> future) {
+    //A request in flight is not stale, failed requests are removed from the cache
+    return future.isDone() && !future.isCompletedExceptionally()
+      && System.currentTimeMillis() >= future.join().refreshAt;
+  }
+
+  private static Credentials copy(Credentials credentials) {
+    return new Credentials(credentials.getAccessKeyId(), credentials.getSecretAccessKey(),
+      credentials.getSessionToken());
+  }
+
+  /**
+   * Drop all cached and registered credentials, so that the next call requests new ones.
+   */
+  public static void clearCache() {
+    CREDENTIALS_CACHE.clear();
+    CredentialRegistry.clear();
+  }
+
+  private static Credentials requestCredentials(String role, String roleSessionName, int durationSeconds)
+    throws CloudCredentialException {
+    RestResponse response;
+    try {
+      HashMap<String, Object> queryParams = new HashMap<>();
+      if (role != null && !role.isEmpty()) {
+        queryParams.put(Constants.HOPSWORKS_CLOUD_SESSION_TOKEN_RESOURCE_QUERY_ROLE, role);
+      }
+      if (roleSessionName != null && !roleSessionName.isEmpty()) {
+        queryParams.put(Constants.HOPSWORKS_CLOUD_SESSION_TOKEN_RESOURCE_QUERY_SESSION, roleSessionName);
+      }
+      if (durationSeconds > 0) {
+        queryParams.put(Constants.HOPSWORKS_CLOUD_SESSION_TOKEN_RESOURCE_QUERY_SESSION_DURATION, durationSeconds);
+      }
+      response = Hops.clientWrapper("/" + Constants.HOPSWORKS_REST_PROJECT_RESOURCE + "/" + Hops.getProjectId() + "/"
+          + Constants.HOPSWORKS_CLOUD_RESOURCE + "/" + Constants.HOPSWORKS_AWS_CLOUD_SESSION_TOKEN_RESOURCE,
+          HttpMethod.GET, queryParams);
+    } catch (HTTPSClientInitializationException | JWTNotFoundException | UncheckedIOException e) {
+      throw new CloudCredentialException(e.getMessage());
+    }
+    LOG.log(Level.FINE, "******* response.getStatus():" + response.getStatus());
+    JSONObject jsonObject = getResponse(response);
+    return getCredentialsFromJson(jsonObject);
+  }
+  
+  /**
+   * Get all roles mapped to the current project
+   * @return list of roles
+   * @throws CloudCredentialException
+   */
+  public static String[] getRoles() throws CloudCredentialException {
+    JSONObject roles = getCloudRoles(null);
+    JSONArray items =  roles.getJSONArray(Constants.JSON_ARRAY_ITEMS);
+    String[] cloudRoles = new String[items.length()];
+    for (int i = 0; i < items.length(); i++) {
+      JSONObject role = (JSONObject) items.get(i);
+      cloudRoles[i] = (String) role.get(Constants.JSON_CLOUD_ROLE);
+    }
+    return cloudRoles;
+  }
+  
+  /**
+   * Get a role arn mapped to the current project by id
+   * @param id
+   * @return role
+   * @throws CloudCredentialException
+   */
+  public static String getRole(Integer id) throws CloudCredentialException {
+    return getCloudRoles(id.toString()).getString(Constants.JSON_CLOUD_ROLE);
+  }
+  
+  /**
+   * Get the default role arn mapped to the current project
+   * @return
+   * @throws CloudCredentialException
+   */
+  public static String getRole() throws CloudCredentialException {
+    return getCloudRoles("default").getString(Constants.JSON_CLOUD_ROLE);
+  }
+  
+  private static JSONObject getCloudRoles(String id) throws CloudCredentialException {
+    RestResponse response;
+    String byId = id == null? "": "/" + id;
+    try {
+      response = RestResponseCache.get("/" + Constants.HOPSWORKS_REST_PROJECT_RESOURCE + "/" + Hops.getProjectId() +
+        "/" + Constants.HOPSWORKS_CLOUD_RESOURCE + "/" + Constants.HOPSWORKS_CLOUD_ROLE_MAPPINGS_RESOURCE + byId, null);
+    } catch (HTTPSClientInitializationException | JWTNotFoundException | UncheckedIOException e) {
+      throw new CloudCredentialException(e.getMessage());
+    }
+    LOG.log(Level.FINE, "******* response.getStatus():" + response.getStatus());
+    return getResponse(response);
+  }
+  
+  private static void setSparkHadoopConf(Credentials credentials) {
+    setSparkHadoopConf(Constants.S3_PREFIX, credentials);
+  }
+
+  /**
+   * Set the credentials in the hadoop configuration, under fs.s3a. for all buckets or fs.s3a.bucket.name. for one.
+   */
+  private static void setSparkHadoopConf(String prefix, Credentials credentials) {
+    if (!System.getenv().containsKey(Constants.SPARK_IS_DRIVER_ENV)) {
+      return;
+    }
+    Configuration conf = getSparkHadoopConf();
+    if (conf == null) {
+      return;
+    }
+    conf.set(prefix + s3Option(Constants.S3_CREDENTIAL_PROVIDER_ENV), Constants.S3_TEMPORARY_CREDENTIAL_PROVIDER);
+    conf.set(prefix + s3Option(Constants.S3_ACCESS_KEY_ENV), credentials.getAccessKeyId());
+    conf.set(prefix + s3Option(Constants.S3_SECRET_KEY_ENV), credentials.getSecretAccessKey());
+    conf.set(prefix + s3Option(Constants.S3_SESSION_KEY_ENV), credentials.getSessionToken());
+  }
+
+  /**
+   * Hadoop configuration of the spark session. Spark is not a dependency of the core classes, the session is looked up
+   * through the spark module when it is on the classpath.
+   */
+  private static Configuration getSparkHadoopConf() {
+    try {
+      return (Configuration) Class.forName("io.hops.util.spark.SparkUtils").getMethod("getHadoopConfiguration")
+        .invoke(null);
+    } catch (ReflectiveOperationException | LinkageError e) {
+      LOG.log(Level.WARNING, "Could not get the Hadoop configuration of the spark session, is hops-util-spark on the "
+        + "classpath?", e);
+      return null;
+    }
+  }
+
+  private static String s3Option(String property) {
+    return property.substring(Constants.S3_PREFIX.length());
+  }
+  
+  /**
+   * Publish the credentials of the assumed role to {@link CredentialRegistry} and the aws.* system properties read by
+   * the AWS SDK. Writing the AWS_* environment variables requires modifying JDK internals and is only done when the
+   * hopsutil.credentials.legacy.env system property is true.
+   */
+  private static void setSystemProperties(String role, Credentials credentials) {
+    CredentialRegistry.put(role, credentials, true);
+    setSystemProperty(Constants.AWS_ACCESS_KEY_ID_PROPERTY, credentials.getAccessKeyId());
+    setSystemProperty(Constants.AWS_SECRET_KEY_PROPERTY, credentials.getSecretAccessKey());
+    setSystemProperty(Constants.AWS_SESSION_TOKEN_PROPERTY, credentials.getSessionToken());
+    if (Boolean.getBoolean(Constants.HOPSUTIL_CREDENTIALS_LEGACY_ENV)) {
+      if (Hops.isNativeImage()) {
+        LOG.log(Level.WARNING, "Ignoring " + Constants.HOPSUTIL_CREDENTIALS_LEGACY_ENV + ", the environment cannot be "
+          + "modified in a native image");
+        return;
+      }
+      Hops.setEnv(Constants.AWS_ACCESS_KEY_ID_ENV, credentials.getAccessKeyId());
+      Hops.setEnv(Constants.AWS_SECRET_ACCESS_KEY_ENV, credentials.getSecretAccessKey());
+      Hops.setEnv(Constants.AWS_SESSION_TOKEN_ENV, credentials.getSessionToken());
+    }
+  }
+  
+  private static void setSystemProperty(String key, String value) {
+    if (value == null) {
+      System.clearProperty(key);
+    } else {
+      System.setProperty(key, value);
+    }
+  }
+  
+  private static Credentials getCredentialsFromJson(JSONObject jsonObject) {
+    Credentials credentials = new Credentials();
+    if (jsonObject.has(Constants.JSON_ACCESS_KEY_ID)) {
+      credentials.setAccessKeyId(jsonObject.getString(Constants.JSON_ACCESS_KEY_ID));
+    }
+    if (jsonObject.has(Constants.JSON_SECRET_ACCESS_KEY_ID)) {
+      credentials.setSecretAccessKey(jsonObject.getString(Constants.JSON_SECRET_ACCESS_KEY_ID));
+    }
+    if (jsonObject.has(Constants.JSON_SESSION_TOKEN_ID)) {
+      credentials.setSessionToken(jsonObject.getString(Constants.JSON_SESSION_TOKEN_ID));
+    }
+    return credentials;
+  }
+  
+  private static JSONObject getResponse(RestResponse response) throws CloudCredentialException {
+    Response.Status.Family statusFamily = response.getFamily();
+    if (response.getMediaType() != null &&
+      MediaType.APPLICATION_JSON_TYPE.getSubtype().equals(response.getMediaType().getSubtype())) {
+      JSONObject content = new JSONObject(response.getEntity());
+      if (statusFamily == Response.Status.Family.INFORMATIONAL || statusFamily == Response.Status.Family.SUCCESSFUL) {
+        return content;
+      } else {
+        String errorMsg =
+          content.getString(Constants.JSON_ERROR_MSG) + " " + content.getString(Constants.JSON_USR_MSG);
+        throw new CloudCredentialException(errorMsg);
+      }
+    } else {
+      throw new CloudCredentialException("Cannot Connect To Server. Got status: " + response.getStatus());
+    }
+  }
+  
+  private static final class CachedCredentials {
+    private final Credentials credentials;
+    private final long refreshAt;
+
+    private CachedCredentials(Credentials credentials, long refreshAt) {
+      this.credentials = credentials;
+      this.refreshAt = refreshAt;
+    }
+  }
+  
+  public static class AssumeRoleRequest {
+    private String roleArn;
+    private String roleSessionName;
+    private int durationSeconds;
+    private String bucket;
+  
+    private AssumeRoleRequest() {
+    }
+    
+    public static AssumeRoleRequest builder() {
+      return new AssumeRoleRequest();
+    }
+    
+    public Credentials send() throws CloudCredentialException {
+      if (bucket != null) {
+        return CredentialsProvider.assumeRoleForBucket(bucket, roleArn, roleSessionName, durationSeconds);
+      }
+      return CredentialsProvider.assumeRole(roleArn, roleSessionName, durationSeconds);
+    }
+
+    /**
+     * Only set the credentials for this bucket, see {@link CredentialsProvider#assumeRoleForBucket}.
+     * @param bucket
+     * @return AssumeRoleRequest
+     */
+    public AssumeRoleRequest setBucket(String bucket) {
+      this.bucket = bucket;
+      return this;
+    }
+  
+    public AssumeRoleRequest setRoleArn(String roleArn) {
+      this.roleArn = roleArn;
+      return this;
+    }
+  
+    public AssumeRoleRequest setRoleSessionName(String roleSessionName) {
+      this.roleSessionName = roleSessionName;
+      return this;
+    }
+  
+    public AssumeRoleRequest setDurationSeconds(int durationSeconds) {
+      this.durationSeconds = durationSeconds;
+      return this;
+    }
+  }
+  
+}
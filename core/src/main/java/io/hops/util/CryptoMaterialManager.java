@@ -0,0 +1,194 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches the X.509 key and trust material of the job and reloads it when Hopsworks rotates the project certificates.
+ * <p>
+ * Reloading happens on a background thread, shortly after the last change so that the keystore, truststore and
+ * password written one after the other are picked up together. On reload the keystore password returned by
+ * {@link Hops} is updated and the shared REST client and transport are rebuilt on their next use. The replaced ones
+ * are closed after a grace period, so that requests in flight can complete.
+ * <p>
+ * Nothing else is swapped in place. Kafka and Elastic clients read the key material and password when they are
+ * created, so clients created through Hops after a reload use the new certificates. Long-running clients must
+ * register a listener and recreate themselves when it is called.
+ * <p>
+ * Watching starts with {@link #start()}, or at setup if the hopsutil.crypto.reload system property is true.
+ */
+public class CryptoMaterialManager {
+
+  private static final Logger LOG = Logger.getLogger(CryptoMaterialManager.class.getName());
+
+  private static final long RELOAD_DELAY_MS = 2000;
+  //Longer than any request to Hopsworks is expected to take
+  private static final long RETIRE_DELAY_MS = 300000;
+  private static final List<Runnable> LISTENERS = new CopyOnWriteArrayList<>();
+
+  private static WatchService watchService;
+  private static ScheduledExecutorService executor;
+  private static ScheduledFuture<?> pendingReload;
+  private static ScheduledExecutorService retirer;
+
+  private CryptoMaterialManager() {
+  }
+
+  /**
+   * Start watching the key material. Calling it again has no effect.
+   *
+   * @throws IOException if the directories of the key material cannot be watched.
+   */
+  public static synchronized void start() throws IOException {
+    if (watchService != null) {
+      return;
+    }
+    Set<Path> files = new HashSet<>();
+    files.add(Paths.get(Hops.getKeyStore()).toAbsolutePath());
+    files.add(Paths.get(Hops.getTrustStore()).toAbsolutePath());
+    files.add(Paths.get(Constants.CRYPTO_MATERIAL_PASSWORD).toAbsolutePath());
+    if (Hops.getDomainCaTruststore() != null) {
+      files.add(Paths.get(Hops.getDomainCaTruststore()).toAbsolutePath());
+    }
+    watchService = FileSystems.getDefault().newWatchService();
+    Set<Path> directories = new HashSet<>();
+    for (Path file : files) {
+      if (directories.add(file.getParent())) {
+        file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+          StandardWatchEventKinds.ENTRY_MODIFY);
+      }
+    }
+    executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "hops-crypto-material-reloader");
+      thread.setDaemon(true);
+      return thread;
+    });
+    Thread watcher = new Thread(() -> watch(watchService, files), "hops-crypto-material-watcher");
+    watcher.setDaemon(true);
+    watcher.start();
+    LOG.log(Level.INFO, "Watching crypto material {0}", files);
+  }
+
+  /**
+   * Stop watching the key material.
+   */
+  public static synchronized void stop() {
+    if (watchService == null) {
+      return;
+    }
+    try {
+      watchService.close();
+    } catch (IOException e) {
+      LOG.log(Level.WARNING, "Could not close watch service", e);
+    }
+    executor.shutdownNow();
+    watchService = null;
+    executor = null;
+  }
+
+  /**
+   * Register a listener called after the key material has been reloaded.
+   *
+   * @param listener listener
+   */
+  public static void addListener(Runnable listener) {
+    LISTENERS.add(listener);
+  }
+
+  public static void removeListener(Runnable listener) {
+    LISTENERS.remove(listener);
+  }
+
+  /**
+   * Reload the key material now.
+   */
+  public static void reload() {
+    retire(Hops.reloadCryptoMaterial());
+    LOG.log(Level.INFO, "Reloaded crypto material");
+    for (Runnable listener : LISTENERS) {
+      try {
+        listener.run();
+      } catch (RuntimeException e) {
+        LOG.log(Level.WARNING, "Crypto material listener failed", e);
+      }
+    }
+  }
+
+  private static void watch(WatchService service, Set<Path> files) {
+    try {
+      while (true) {
+        WatchKey key = service.take();
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+          if (event.context() instanceof Path
+            && files.contains(((Path) key.watchable()).resolve((Path) event.context()).toAbsolutePath())) {
+            changed = true;
+          }
+        }
+        key.reset();
+        if (changed) {
+          scheduleReload();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ClosedWatchServiceException e) {
+      LOG.log(Level.FINE, "Stopped watching crypto material");
+    }
+  }
+
+  private static synchronized void scheduleReload() {
+    if (executor == null) {
+      return;
+    }
+    if (pendingReload != null) {
+      pendingReload.cancel(false);
+    }
+    pendingReload = executor.schedule(CryptoMaterialManager::reload, RELOAD_DELAY_MS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Close the replaced REST client and transport once requests in flight on them are done. Runs on its own thread so
+   * that stopping the watcher does not leak them.
+   */
+  private static synchronized void retire(Runnable close) {
+    if (retirer == null) {
+      retirer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "hops-crypto-material-retirer");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    retirer.schedule(close, RETIRE_DELAY_MS, TimeUnit.MILLISECONDS);
+  }
+}
@@ -0,0 +1,677 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util;
+
+import io.hops.util.exceptions.DatasetTransferException;
+import io.hops.util.exceptions.HTTPSClientInitializationException;
+import io.hops.util.exceptions.JWTNotFoundException;
+import org.json.JSONObject;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * Uploads files to and downloads files from project datasets, e.g. Resources/mydir.
+ * <p>
+ * Files are split into chunks which are transferred concurrently over the configured Hopsworks REST transport, rate
+ * limited like all other REST calls. Chunks are streamed from and to a {@link FileChannel}, so files are never
+ * buffered on the heap. Uploads use the chunk test of the Hopsworks upload service to skip chunks it has already
+ * acknowledged, downloads keep a journal of completed chunks and their checksums next to the partial file. A transfer
+ * that failed can therefore be resumed by repeating the same call.
+ *
+ * <pre>
+ * DatasetTransfer.builder().setParallelism(8).upload("/tmp/model.zip", "Resources/models");
+ * DatasetTransfer.builder().download("Resources/models/model.zip", "/tmp/model.zip");
+ * </pre>
+ */
+public class DatasetTransfer {
+
+  private static final Logger LOG = Logger.getLogger(DatasetTransfer.class.getName());
+
+  public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+  public static final int DEFAULT_PARALLELISM = 4;
+  public static final int DEFAULT_MAX_RETRIES = 3;
+  private static final String PART_SUFFIX = ".part";
+  private static final String JOURNAL_SUFFIX = ".chunks";
+  private static final String CRLF = "\r\n";
+  private static final String RANGE_HEADER = "Range";
+  private static final String IF_RANGE_HEADER = "If-Range";
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private int chunkSize = DEFAULT_CHUNK_SIZE;
+  private int parallelism = DEFAULT_PARALLELISM;
+  private int maxRetries = DEFAULT_MAX_RETRIES;
+
+  private DatasetTransfer() {
+  }
+
+  public static DatasetTransfer builder() {
+    return new DatasetTransfer();
+  }
+
+  public DatasetTransfer setChunkSize(int chunkSize) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("Chunk size must be positive.");
+    }
+    this.chunkSize = chunkSize;
+    return this;
+  }
+
+  public DatasetTransfer setParallelism(int parallelism) {
+    if (parallelism <= 0) {
+      throw new IllegalArgumentException("Parallelism must be positive.");
+    }
+    this.parallelism = parallelism;
+    return this;
+  }
+
+  public DatasetTransfer setMaxRetries(int maxRetries) {
+    this.maxRetries = maxRetries;
+    return this;
+  }
+
+  /**
+   * Upload a local file into a dataset directory of the current project.
+   *
+   * @param localFile path of the local file.
+   * @param datasetDir dataset directory relative to the project, e.g. Resources/mydir.
+   * @throws DatasetTransferException DatasetTransferException
+   */
+  public void upload(String localFile, String datasetDir) throws DatasetTransferException {
+    Path file = Paths.get(localFile);
+    long size;
+    try {
+      size = Files.size(file);
+    } catch (IOException e) {
+      throw new DatasetTransferException("Could not read " + localFile, e);
+    }
+    String fileName = file.getFileName().toString();
+    //Same chunking and identifier as flow.js, which the Hopsworks upload service expects
+    int totalChunks = (int) Math.max(1, size / chunkSize);
+    String identifier = size + "-" + fileName.replaceAll("[^0-9a-zA-Z_-]", "");
+    String resource = datasetResource(Constants.HOPSWORKS_REST_DATASET_UPLOAD_RESOURCE, datasetDir);
+    LOG.log(Level.FINE, "Uploading {0} to {1} in {2} chunks", new Object[]{localFile, datasetDir, totalChunks});
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      runChunks(totalChunks, Collections.emptySet(), chunk -> {
+        Map<String, Object> params = new LinkedHashMap<>();
+        long offset = (long) chunk * chunkSize;
+        long length = chunk == totalChunks - 1 ? size - offset : chunkSize;
+        params.put("flowChunkNumber", chunk + 1);
+        params.put("flowChunkSize", chunkSize);
+        params.put("flowCurrentChunkSize", length);
+        params.put("flowTotalSize", size);
+        params.put("flowIdentifier", identifier);
+        params.put("flowFilename", fileName);
+        params.put("flowRelativePath", fileName);
+        params.put("flowTotalChunks", totalChunks);
+        uploadChunk(channel, resource, params, offset, length);
+      });
+    } catch (IOException e) {
+      throw new DatasetTransferException("Could not read " + localFile, e);
+    }
+  }
+
+  /**
+   * Download a file of a dataset of the current project. The file is written to localFile.part and moved into place
+   * once all chunks have been received.
+   *
+   * @param datasetFile file path relative to the project, e.g. Resources/mydir/file.csv
+   * @param localFile path of the local file.
+   * @throws DatasetTransferException DatasetTransferException
+   */
+  public void download(String datasetFile, String localFile) throws DatasetTransferException {
+    Path target = Paths.get(localFile);
+    Path part = Paths.get(localFile + PART_SUFFIX);
+    Path journalFile = Paths.get(localFile + PART_SUFFIX + JOURNAL_SUFFIX);
+    try {
+      downloadPart(datasetFile, part, journalFile);
+    } catch (DatasetTransferException e) {
+      if (!(e.getCause() instanceof RemoteFileChangedException)) {
+        throw e;
+      }
+      //Chunks of the previous version cannot be combined with the new one, start over
+      LOG.log(Level.WARNING, "{0} changed since the download started, downloading it again", datasetFile);
+      try {
+        Files.deleteIfExists(journalFile);
+        Files.deleteIfExists(part);
+      } catch (IOException ex) {
+        throw new DatasetTransferException("Could not remove partial download of " + localFile, ex);
+      }
+      downloadPart(datasetFile, part, journalFile);
+    }
+    try {
+      Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+      Files.deleteIfExists(journalFile);
+    } catch (IOException e) {
+      throw new DatasetTransferException("Could not move downloaded file to " + localFile, e);
+    }
+  }
+
+  private void downloadPart(String datasetFile, Path part, Path journalFile) throws DatasetTransferException {
+    try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.READ,
+      StandardOpenOption.WRITE)) {
+      DownloadToken token = new DownloadToken(datasetFile);
+      Journal journal = Journal.load(journalFile, chunkSize);
+      if (journal != null && channel.size() != journal.remote.size) {
+        //The partial file is sized when the journal is created, it was replaced or truncated since
+        LOG.log(Level.WARNING, "Partial download of {0} does not match its journal, starting over", datasetFile);
+        journal.close();
+        journal = null;
+      }
+      if (journal == null) {
+        //The first chunk tells the size and version of the file, unless the server does not support ranges
+        channel.truncate(0);
+        Received first = downloadChunk(channel, token, 0, null);
+        if (first.remote == null) {
+          LOG.log(Level.FINE, "Range requests not supported, downloaded {0} in one stream", datasetFile);
+        } else {
+          if (first.remote.size > channel.size()) {
+            //Size the file up front, chunks are written concurrently at their offsets
+            channel.write(ByteBuffer.wrap(new byte[1]), first.remote.size - 1);
+          }
+          channel.force(false);
+          journal = Journal.create(journalFile, chunkSize, first.remote);
+          journal.complete(0, first.checksum);
+        }
+      } else {
+        int corrupt = verifyChunks(journal, channel);
+        LOG.log(Level.INFO, "Resuming download of {0} with {1} completed chunks, {2} failed verification",
+          new Object[]{datasetFile, journal.chunks.size(), corrupt});
+      }
+      if (journal != null) {
+        try (Journal current = journal) {
+          long size = current.remote.size;
+          int totalChunks = (int) Math.max(1, (size + chunkSize - 1) / chunkSize);
+          runChunks(totalChunks, current.chunks.keySet(), chunk -> {
+            Received received = downloadChunk(channel, token, chunk, current.remote);
+            channel.force(false);
+            current.complete(chunk, received.checksum);
+          });
+        }
+      }
+      channel.force(true);
+    } catch (IOException e) {
+      throw new DatasetTransferException("Could not write " + part, e);
+    }
+  }
+
+  /**
+   * Check the journaled chunks of the partial file against their checksums and forget the chunks that do not match,
+   * so that they are downloaded again.
+   *
+   * @return number of chunks that failed verification.
+   */
+  private int verifyChunks(Journal journal, FileChannel channel) throws IOException {
+    int corrupt = 0;
+    ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    for (Map.Entry<Integer, Long> chunk : journal.chunks.entrySet()) {
+      long position = (long) chunk.getKey() * chunkSize;
+      long end = Math.min(journal.remote.size, position + chunkSize);
+      CRC32 checksum = new CRC32();
+      while (position < end) {
+        buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+        int read = channel.read(buffer, position);
+        if (read < 0) {
+          break;
+        }
+        checksum.update(buffer.array(), 0, read);
+        position += read;
+      }
+      if (position < end || checksum.getValue() != chunk.getValue()) {
+        journal.chunks.remove(chunk.getKey());
+        corrupt++;
+      }
+    }
+    return corrupt;
+  }
+
+  private void uploadChunk(FileChannel channel, String resource, Map<String, Object> params, long offset, long length)
+    throws Exception {
+    try (StreamingResponse test = Hops.executeStreaming(HttpMethod.GET, resource, params, Collections.emptyMap(),
+      null, null)) {
+      if (test.getStatus() == Response.Status.OK.getStatusCode()) {
+        LOG.log(Level.FINE, "Chunk {0} already uploaded", params.get("flowChunkNumber"));
+        return;
+      }
+    }
+    String boundary = "hops-" + UUID.randomUUID();
+    StringBuilder head = new StringBuilder();
+    for (Map.Entry<String, Object> param : params.entrySet()) {
+      head.append("--").append(boundary).append(CRLF)
+        .append("Content-Disposition: form-data; name=\"").append(param.getKey()).append('"').append(CRLF)
+        .append(CRLF).append(param.getValue()).append(CRLF);
+    }
+    head.append("--").append(boundary).append(CRLF)
+      .append("Content-Disposition: form-data; name=\"file\"; filename=\"").append(params.get("flowFilename"))
+      .append('"').append(CRLF)
+      .append("Content-Type: ").append(MediaType.APPLICATION_OCTET_STREAM).append(CRLF).append(CRLF);
+    byte[] headBytes = head.toString().getBytes(StandardCharsets.UTF_8);
+    byte[] tailBytes = (CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.UTF_8);
+    Supplier<InputStream> body = () -> new SequenceInputStream(Collections.enumeration(Arrays.asList(
+      new ByteArrayInputStream(headBytes), new ChannelInputStream(channel, offset, length),
+      new ByteArrayInputStream(tailBytes))));
+    try (StreamingResponse response = Hops.executeStreaming(HttpMethod.POST, resource, null, Collections.emptyMap(),
+      MediaType.MULTIPART_FORM_DATA + "; boundary=" + boundary, body)) {
+      if (Response.Status.Family.familyOf(response.getStatus()) != Response.Status.Family.SUCCESSFUL) {
+        throw new TransferStatusException(response.getStatus(), "Upload of chunk " + params.get("flowChunkNumber")
+          + " failed with status " + response.getStatus() + ": " + readBody(response));
+      }
+    }
+  }
+
+  /**
+   * Download one chunk into the channel. Chunks after the first one are requested with If-Range, so that a file
+   * changed on the server is detected instead of mixing chunks of two versions.
+   *
+   * @param expected size and version of the file from the first chunk, null when downloading the first chunk.
+   * @return size and version of the file, which are null if the server ignored the range and sent the whole file,
+   * and the checksum of the chunk.
+   * @throws RemoteFileChangedException if the file no longer matches the expected size or version.
+   */
+  private Received downloadChunk(FileChannel channel, DownloadToken token, int chunk, Remote expected)
+    throws Exception {
+    long offset = (long) chunk * chunkSize;
+    long end = expected == null ? offset + chunkSize - 1 : Math.min(expected.size, offset + chunkSize) - 1;
+    String tokenValue = token.get();
+    StreamingResponse response = requestChunk(token.datasetFile, tokenValue, offset, end, expected);
+    if (response.getStatus() == Response.Status.UNAUTHORIZED.getStatusCode()
+      || response.getStatus() == Response.Status.FORBIDDEN.getStatusCode()) {
+      //The token expired, request a new one for all chunks
+      response.close();
+      token.invalidate(tokenValue);
+      response = requestChunk(token.datasetFile, token.get(), offset, end, expected);
+    }
+    try (StreamingResponse current = response) {
+      CRC32 checksum = new CRC32();
+      if (current.getStatus() == Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE.getStatusCode() && expected == null) {
+        //Empty file
+        return new Received(new Remote(0, getValidator(current)), checksum.getValue());
+      }
+      if (current.getStatus() == Response.Status.OK.getStatusCode()) {
+        if (expected != null) {
+          //If-Range did not match, the server sent the current version of the whole file
+          throw new RemoteFileChangedException(token.datasetFile);
+        }
+        channel.truncate(0);
+        receive(current.getBody(), channel, 0, Long.MAX_VALUE, checksum);
+        return new Received(null, checksum.getValue());
+      }
+      if (current.getStatus() != Response.Status.PARTIAL_CONTENT.getStatusCode()) {
+        throw new TransferStatusException(current.getStatus(), "Download of chunk " + chunk
+          + " failed with status " + current.getStatus() + ": " + readBody(current));
+      }
+      //Content-Range: bytes start-end/total
+      String contentRange = current.getHeader(HttpHeaders.CONTENT_RANGE);
+      long total = Long.parseLong(contentRange.substring(contentRange.lastIndexOf('/') + 1).trim());
+      Remote remote = new Remote(total, getValidator(current));
+      if (expected != null && !expected.matches(remote)) {
+        throw new RemoteFileChangedException(token.datasetFile);
+      }
+      end = Math.min(end, total - 1);
+      long received = receive(current.getBody(), channel, offset, end - offset + 1, checksum);
+      if (received != end - offset + 1) {
+        throw new IOException("Chunk " + chunk + " is incomplete, received " + received + " bytes");
+      }
+      return new Received(remote, checksum.getValue());
+    }
+  }
+
+  private StreamingResponse requestChunk(String datasetFile, String token, long offset, long end, Remote expected)
+    throws Exception {
+    Map<String, Object> params = new HashMap<>();
+    params.put("token", token);
+    params.put("type", Constants.HOPSWORKS_REST_DATASET_TYPE);
+    Map<String, String> headers = new HashMap<>();
+    headers.put(HttpHeaders.ACCEPT, MediaType.APPLICATION_OCTET_STREAM);
+    headers.put(RANGE_HEADER, "bytes=" + offset + "-" + end);
+    if (expected != null && expected.validator != null) {
+      headers.put(IF_RANGE_HEADER, expected.validator);
+    }
+    return Hops.executeStreaming(HttpMethod.GET, datasetResource(Constants.HOPSWORKS_REST_DATASET_DOWNLOAD_RESOURCE,
+      datasetFile), params, headers, null, null);
+  }
+
+  /**
+   * Version of the file sent by the server, its ETag or else its modification time.
+   */
+  private static String getValidator(StreamingResponse response) {
+    String etag = response.getHeader(HttpHeaders.ETAG);
+    return etag != null ? etag : response.getHeader(HttpHeaders.LAST_MODIFIED);
+  }
+
+  /**
+   * Write a response body at an offset of the channel. Positional writes let chunks be written concurrently.
+   *
+   * @return number of bytes written.
+   */
+  private static long receive(InputStream in, FileChannel channel, long offset, long length, Checksum checksum)
+    throws IOException {
+    byte[] buffer = new byte[BUFFER_SIZE];
+    long position = offset;
+    int read;
+    while (position - offset < length
+      && (read = in.read(buffer, 0, (int) Math.min(buffer.length, length - (position - offset)))) > 0) {
+      checksum.update(buffer, 0, read);
+      ByteBuffer source = ByteBuffer.wrap(buffer, 0, read);
+      while (source.hasRemaining()) {
+        position += channel.write(source, position);
+      }
+    }
+    return position - offset;
+  }
+
+  private static String readBody(StreamingResponse response) throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    byte[] buffer = new byte[BUFFER_SIZE];
+    int read;
+    while ((read = response.getBody().read(buffer)) > 0) {
+      body.write(buffer, 0, read);
+    }
+    return new String(body.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  private static String requestDownloadToken(String datasetFile) throws HTTPSClientInitializationException,
+    JWTNotFoundException, TransferStatusException {
+    Map<String, Object> params = new HashMap<>();
+    params.put("type", Constants.HOPSWORKS_REST_DATASET_TYPE);
+    RestResponse response = Hops.execute(HttpMethod.GET, datasetResource(
+      Constants.HOPSWORKS_REST_DATASET_DOWNLOAD_TOKEN_RESOURCE, datasetFile), params, Collections.emptyMap(), null);
+    if (response.getStatus() != Response.Status.OK.getStatusCode()) {
+      throw new TransferStatusException(response.getStatus(), "Could not get download token for " + datasetFile
+        + ": " + response.getEntity());
+    }
+    return new JSONObject(response.getEntity()).getJSONObject("data").getString("value");
+  }
+
+  private static String datasetResource(String resource, String path) {
+    return Constants.SLASH_DELIMITER + Constants.HOPSWORKS_REST_PROJECT_RESOURCE + Constants.SLASH_DELIMITER
+      + Hops.getProjectId() + Constants.SLASH_DELIMITER + Constants.HOPSWORKS_REST_DATASET_RESOURCE
+      + Constants.SLASH_DELIMITER + resource + Constants.SLASH_DELIMITER + path;
+  }
+
+  /**
+   * Run the chunk tasks with bounded concurrency, retrying each chunk that failed with an I/O error, a 5xx or a 429
+   * response up to maxRetries times.
+   */
+  private void runChunks(int totalChunks, Set<Integer> completed, ChunkTask task) throws DatasetTransferException {
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, totalChunks));
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < totalChunks; i++) {
+        if (completed.contains(i)) {
+          continue;
+        }
+        final int chunk = i;
+        futures.add(executor.submit(() -> {
+          for (int attempt = 0; ; attempt++) {
+            try {
+              task.run(chunk);
+              return null;
+            } catch (Exception e) {
+              if (attempt >= maxRetries || !isTransient(e)) {
+                throw e;
+              }
+              LOG.log(Level.WARNING, "Transfer of chunk " + chunk + " failed, retrying", e);
+              Thread.sleep(1000L * (attempt + 1));
+            }
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (ExecutionException e) {
+      throw new DatasetTransferException("Transfer failed, it can be resumed by repeating the call. "
+        + e.getCause().getMessage(), e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DatasetTransferException("Transfer was interrupted", e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static boolean isTransient(Exception e) {
+    if (e instanceof TransferStatusException) {
+      int status = ((TransferStatusException) e).status;
+      return status >= 500 || status == RestRateLimiter.TOO_MANY_REQUESTS;
+    }
+    return (e instanceof IOException || e instanceof UncheckedIOException)
+      && !(e instanceof RemoteFileChangedException);
+  }
+
+  @FunctionalInterface
+  private interface ChunkTask {
+    void run(int chunk) throws Exception;
+  }
+
+  /**
+   * Download token of a file, requested once and shared by all chunks. A new token is only requested after Hopsworks
+   * rejected the current one.
+   */
+  private static class DownloadToken {
+
+    private final String datasetFile;
+    private String value;
+
+    DownloadToken(String datasetFile) {
+      this.datasetFile = datasetFile;
+    }
+
+    synchronized String get() throws HTTPSClientInitializationException, JWTNotFoundException,
+      TransferStatusException {
+      if (value == null) {
+        value = requestDownloadToken(datasetFile);
+      }
+      return value;
+    }
+
+    synchronized void invalidate(String rejected) {
+      //Other chunks may have replaced it already
+      if (rejected.equals(value)) {
+        value = null;
+      }
+    }
+  }
+
+  /**
+   * Outcome of a chunk download.
+   */
+  private static class Received {
+
+    private final Remote remote;
+    private final long checksum;
+
+    Received(Remote remote, long checksum) {
+      this.remote = remote;
+      this.checksum = checksum;
+    }
+  }
+
+  /**
+   * Reads a region of a file with positional reads, so that chunks of the same channel can be read concurrently.
+   */
+  private static class ChannelInputStream extends InputStream {
+
+    private final FileChannel channel;
+    private final long end;
+    private long position;
+
+    ChannelInputStream(FileChannel channel, long offset, long length) {
+      this.channel = channel;
+      this.position = offset;
+      this.end = offset + length;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] single = new byte[1];
+      return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (position >= end) {
+        return -1;
+      }
+      int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+      if (read < 0) {
+        throw new IOException("File was truncated during upload");
+      }
+      position += read;
+      return read;
+    }
+  }
+
+  /**
+   * Size and version of a remote file.
+   */
+  private static class Remote {
+
+    private final long size;
+    private final String validator;
+
+    Remote(long size, String validator) {
+      this.size = size;
+      this.validator = validator == null || validator.isEmpty() ? null : validator;
+    }
+
+    boolean matches(Remote other) {
+      return size == other.size && (validator == null || other.validator == null || validator.equals(other.validator));
+    }
+  }
+
+  /**
+   * Thrown when Hopsworks rejected a transfer request.
+   */
+  private static class TransferStatusException extends IOException {
+
+    private final int status;
+
+    TransferStatusException(int status, String message) {
+      super(message);
+      this.status = status;
+    }
+  }
+
+  /**
+   * Thrown when a file changed on the server during a download.
+   */
+  private static class RemoteFileChangedException extends IOException {
+    RemoteFileChangedException(String datasetFile) {
+      super(datasetFile + " changed on the server during the download");
+    }
+  }
+
+  /**
+   * Append-only list of downloaded chunks and their CRC32 checksums. The first line holds the file size, the chunk size
+   * and the version of the file the journal was written for.
+   */
+  private static class Journal implements Closeable {
+
+    private final Remote remote;
+    private final Map<Integer, Long> chunks = new ConcurrentHashMap<>();
+    private final BufferedWriter writer;
+
+    private Journal(Path file, Remote remote) throws IOException {
+      this.remote = remote;
+      this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+        StandardOpenOption.APPEND);
+    }
+
+    static Journal create(Path file, int chunkSize, Remote remote) throws IOException {
+      Files.deleteIfExists(file);
+      Journal journal = new Journal(file, remote);
+      journal.writer.write(remote.size + " " + chunkSize + (remote.validator == null ? "" : " " + remote.validator));
+      journal.writer.newLine();
+      journal.writer.flush();
+      return journal;
+    }
+
+    static Journal load(Path file, int chunkSize) throws IOException {
+      if (!Files.exists(file)) {
+        return null;
+      }
+      List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+      if (lines.isEmpty()) {
+        return null;
+      }
+      //The validator is the rest of the line, a modification time contains spaces
+      String[] header = lines.get(0).split(" ", 3);
+      if (header.length < 2 || Integer.parseInt(header[1]) != chunkSize) {
+        //Written with a different chunk size, start over
+        return null;
+      }
+      Journal journal = new Journal(file, new Remote(Long.parseLong(header[0]), header.length > 2 ? header[2] : null));
+      for (String line : lines.subList(1, lines.size())) {
+        String[] chunk = line.split(" ");
+        //A chunk without checksum cannot be verified and is downloaded again
+        if (chunk.length == 2) {
+          journal.chunks.put(Integer.parseInt(chunk[0]), Long.parseLong(chunk[1]));
+        }
+      }
+      return journal;
+    }
+
+    synchronized void complete(int chunk, long checksum) throws IOException {
+      writer.write(chunk + " " + checksum);
+      writer.newLine();
+      writer.flush();
+      chunks.put(chunk, checksum);
+    }
+
+    @Override
+    public void close() throws IOException {
+      writer.close();
+    }
+  }
+}
@@ -0,0 +1,1178 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.hops.util;
+
+import com.google.common.base.Strings;
+import io.hops.util.exceptions.ElasticAuthorizationTokenException;
+import io.hops.util.exceptions.HTTPSClientInitializationException;
+import io.hops.util.exceptions.JWTNotFoundException;
+import io.hops.util.exceptions.ProjectException;
+import io.hops.util.exceptions.SchemaNotFoundException;
+import io.hops.util.exceptions.SecretException;
+import org.glassfish.jersey.message.DeflateEncoder;
+import org.glassfish.jersey.message.GZipEncoder;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.TrustManagerFactory;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Field;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Utility class to be used by applications that want to communicate with Hopsworks.
+ * Users can call the getters within their Hopsworks jobs to get the provided properties.
+ */
+public class Hops {
+
+  private static final Logger LOG = Logger.getLogger(Hops.class.getName());
+
+  private static Integer projectId;
+  private static String projectName;
+  private static String jobName;
+  private static String appId;
+  private static String jobType;
+  private static List<String> brokerEndpointsList;
+  private static String brokerEndpoints;
+  private static volatile boolean initialized;
+  private static String restEndpoint;
+  private static boolean insecure;
+  private static String keyStore;
+  private static String trustStore;
+  private static volatile String keystorePwd;
+  private static volatile String truststorePwd;
+  private static String elasticEndPoint;
+  private static String domainCaTruststore;
+  private static volatile Client client;
+  private static volatile HttpTransport transport;
+  private static volatile String elasticToken;
+  private static volatile long elasticTokenExpiry;
+  private static final Map<String, Integer> PROJECT_ID_CACHE = new ConcurrentHashMap<>();
+  private static final long ELASTIC_TOKEN_EXPIRY_MARGIN_MS = 60000;
+  private static final int BATCH_PARALLELISM = Integer.getInteger(Constants.HOPSUTIL_REST_BATCH_PARALLELISM, 8);
+
+  static {
+    setup();
+  }
+
+  private Hops() {
+
+  }
+
+  /**
+   * Setup the static Hops instance upon instantiation.
+   * <p>
+   */
+  private static synchronized void setup() {
+    Properties sysProps = System.getProperties();
+    //If the sysProps are properly set, it is a Spark job, or a Flink job started with them. Other Flink jobs must call
+    //the setup method with their parameters.
+    String type = sysProps.getProperty(Constants.JOBTYPE_ENV_VAR);
+    if ("spark".equalsIgnoreCase(type)) {
+      setup(sysProps);
+    } else if ("flink".equalsIgnoreCase(type)) {
+      String missing = findMissingProperty(sysProps);
+      if (missing == null) {
+        setup(sysProps);
+      } else {
+        LOG.log(Level.FINE, "System property {0} is not set, waiting for Hops.setup(parameters)", missing);
+      }
+    }
+  }
+
+  /**
+   * Setup Hops in a Flink job, whose parameters are not passed as system properties. The parameters use the names of
+   * the Spark system properties, such as hopsworks.restendpoint, hopsworks.projectid and hopsworks.projectname, and
+   * take precedence over system properties of the same name.
+   *
+   * <pre>
+   * Hops.setup(ParameterTool.fromArgs(args).toMap());
+   * </pre>
+   * Calling it again, or in a job that was already set up from its system properties, has no effect.
+   *
+   * @param parameters job parameters.
+   */
+  public static synchronized void setup(Map<String, String> parameters) {
+    if (initialized) {
+      LOG.log(Level.FINE, "Hops is already set up, ignoring the job parameters");
+      return;
+    }
+    Properties properties = new Properties();
+    properties.putAll(System.getProperties());
+    properties.putAll(parameters);
+    properties.putIfAbsent(Constants.JOBTYPE_ENV_VAR, "flink");
+    String missing = findMissingProperty(properties);
+    if (missing != null) {
+      throw new IllegalArgumentException("Missing job parameter " + missing);
+    }
+    setup(properties);
+  }
+
+  private static String findMissingProperty(Properties properties) {
+    for (String required : new String[]{Constants.HOPSWORKS_RESTENDPOINT, Constants.PROJECTID_ENV_VAR,
+      Constants.PROJECTNAME_ENV_VAR}) {
+      if (Strings.isNullOrEmpty(properties.getProperty(required))) {
+        return required;
+      }
+    }
+    return null;
+  }
+
+  private static void setup(Properties sysProps) {
+    long start = System.nanoTime();
+    restEndpoint = sysProps.getProperty(Constants.HOPSWORKS_RESTENDPOINT);
+    insecure = Boolean.parseBoolean(sysProps.getProperty(Constants.HOPSUTIL_INSECURE));
+    projectName = sysProps.getProperty(Constants.PROJECTNAME_ENV_VAR);
+    keyStore = Constants.K_CERTIFICATE_ENV_VAR;
+    trustStore = Constants.T_CERTIFICATE_ENV_VAR;
+
+    //Get keystore and truststore passwords from Hopsworks
+    projectId = Integer.parseInt(sysProps.getProperty(Constants.PROJECTID_ENV_VAR));
+    String pwd = getCertPw();
+    keystorePwd = pwd;
+    truststorePwd = pwd;
+    jobName = sysProps.getProperty(Constants.JOBNAME_ENV_VAR);
+    appId = sysProps.getProperty(Constants.APPID_ENV_VAR);
+    jobType = sysProps.getProperty(Constants.JOBTYPE_ENV_VAR);
+
+    elasticEndPoint = sysProps.getProperty(Constants.ELASTIC_ENDPOINT_ENV_VAR);
+    domainCaTruststore = sysProps.getProperty(Constants.DOMAIN_CA_TRUSTSTORE);
+    //Spark Kafka topics
+    if (sysProps.containsKey(Constants.KAFKA_BROKERADDR_ENV_VAR)) {
+      parseBrokerEndpoints(sysProps.getProperty(Constants.KAFKA_BROKERADDR_ENV_VAR));
+    }
+    if (Boolean.parseBoolean(sysProps.getProperty(Constants.HOPSUTIL_CRYPTO_RELOAD))) {
+      try {
+        CryptoMaterialManager.start();
+      } catch (IOException e) {
+        LOG.log(Level.WARNING, "Could not watch crypto material, certificate rotation requires a restart", e);
+      }
+    }
+    initialized = true;
+    ConnectionWarmup.start();
+    HopsClientMetrics.recordSetup(System.nanoTime() - start);
+  }
+
+  /**
+   * Fail with a clear message instead of a NullPointerException when Hops is used before it was set up.
+   *
+   * @throws IllegalStateException if neither the hopsworks.* system properties nor {@link #setup(Map)} set up Hops.
+   */
+  public static void checkInitialized() {
+    if (!initialized) {
+      throw new IllegalStateException("Hops is not set up, Spark jobs need the hopsworks.* system properties and Flink "
+        + "jobs must call Hops.setup(parameters) first");
+    }
+  }
+
+  /**
+   * Get all versions of the Avro schema of a Kafka topic, so that records written with earlier versions can still be
+   * decoded. If the versions of the subject cannot be listed, only the current schema is returned.
+   *
+   * @param topic Kafka topic name.
+   * @return Avro schemas as String objects in JSON format, oldest first.
+   * @throws SchemaNotFoundException SchemaNotFoundException
+   * @throws JWTNotFoundException JWTNotFoundException
+   */
+  public static List<String> getSchemaVersions(String topic) throws JWTNotFoundException, SchemaNotFoundException {
+    LOG.log(Level.FINE, "Getting schema versions for topic:{0}", new String[]{topic});
+    String subjectsPath = "/project/" + projectId + "/kafka/subjects/";
+    try {
+      RestResponse response = RestResponseCache.get("/project/" + projectId + "/kafka/topics/" + topic + "/subjects",
+        null);
+      if (response.getStatus() != Response.Status.OK.getStatusCode()) {
+        throw new SchemaNotFoundException("No schema found for topic:" + topic);
+      }
+      JSONObject current = new JSONObject(response.getEntity());
+      String subject = current.optString("subject", null);
+      RestResponse versions = subject == null ? null
+        : RestResponseCache.get(subjectsPath + subject + "/versions", null);
+      if (versions == null || versions.getStatus() != Response.Status.OK.getStatusCode()) {
+        return Collections.singletonList(current.getString("schema"));
+      }
+      JSONArray versionIds = new JSONArray(versions.getEntity());
+      List<String> schemas = new ArrayList<>(versionIds.length());
+      for (int i = 0; i < versionIds.length(); i++) {
+        RestResponse version = RestResponseCache.get(subjectsPath + subject + "/versions/" + versionIds.get(i), null);
+        if (version.getStatus() == Response.Status.OK.getStatusCode()) {
+          schemas.add(new JSONObject(version.getEntity()).getString("schema"));
+        }
+      }
+      if (schemas.isEmpty()) {
+        schemas.add(current.getString("schema"));
+      }
+      return schemas;
+    } catch (HTTPSClientInitializationException e) {
+      throw new SchemaNotFoundException(e.getMessage());
+    }
+  }
+
+  /**
+   * Get the Avro schema for a particular Kafka topic and its version.
+   *
+   * @param topic     Kafka topic name.
+   * @return Avro schema as String object in JSON format
+   * @throws SchemaNotFoundException      SchemaNotFoundException
+   * @throws JWTNotFoundException JWTNotFoundException
+   */
+  public static String getSchema(String topic) throws
+    JWTNotFoundException, SchemaNotFoundException {
+    LOG.log(Level.FINE, "Getting schema for topic:{0}", new String[]{topic});
+
+    RestResponse response = null;
+    try {
+      response = RestResponseCache.get("/project/" + projectId + "/kafka/topics/" + topic + "/subjects", null);
+    } catch (HTTPSClientInitializationException e) {
+      throw new SchemaNotFoundException(e.getMessage());
+    }
+    if (response.getStatus() != Response.Status.OK.getStatusCode()) {
+      throw new SchemaNotFoundException("No schema found for topic:" + topic);
+    }
+    final String responseEntity = response.getEntity();
+    //Extract fields from json
+    LOG.log(Level.FINE, "responseEntity:" + responseEntity);
+    JSONObject json = new JSONObject(responseEntity);
+    return json.getString("schema");
+  }
+
+  /**
+   * Get the project description by name
+   *
+   * @param projectName     Project name.
+   * @return Project description
+   * @throws JWTNotFoundException JWTNotFoundException
+   * @throws ProjectException ProjectException
+   */
+  private static JSONObject getProjectInfo(String projectName) throws
+    JWTNotFoundException, ProjectException {
+    LOG.log(Level.FINE, "Getting project with name:{0}", new String[]{projectName});
+
+    RestResponse response = null;
+    try {
+      response = RestResponseCache.get("/project/getProjectInfo/" + projectName, null);
+    } catch (HTTPSClientInitializationException e) {
+      throw new ProjectException(e.getMessage());
+    }
+    if (response.getStatus() != Response.Status.OK.getStatusCode()) {
+      throw new ProjectException("No project found named " + projectName);
+    }
+    return new JSONObject(response.getEntity());
+  }
+
+  /**
+   * Get the secret token given the name.
+   *
+   * @param name     Secret name.
+   * @return Secret token value
+   * @throws SecretException      SecretException
+   * @throws JWTNotFoundException JWTNotFoundException
+   */
+  public static String getSecret(String name) throws SecretException, JWTNotFoundException {
+    return getSecret(name, null);
+  }
+
+  /**
+   * Get the secret token given the name and optionally the owner if the secret is shared with the current project.
+   *
+   * @param name     Secret name.
+   * @param owner    Username of the user that shared the secret with the current project.
+   * @return Secret token value.
+   * @throws JWTNotFoundException JWTNotFoundException
+   * @throws SecretException      SecretException
+   */
+  public static String getSecret(String name, String owner) throws
+    JWTNotFoundException, SecretException {
+    LOG.log(Level.FINE, "Getting secret with name:{0}", new String[]{name});
+
+    RestResponse response = null;
+    try {
+      if(Strings.isNullOrEmpty(owner)) {
+        response = clientWrapper(null, "/users/secrets/" + name,
+          HttpMethod.GET, null);
+      } else {
+        Map<String, Object> queryParams = new HashMap<>();
+        queryParams.put("name", name);
+        queryParams.put("owner", owner);
+        response = clientWrapper(null, "/users/secrets/shared",
+          HttpMethod.GET, queryParams);
+      }
+    } catch (HTTPSClientInitializationException e) {
+      throw new SecretException(e.getMessage());
+    }
+    String responseEntity = response.getEntity();
+
+    if (response.getStatus() != Response.Status.OK.getStatusCode()) {
+      throw new SecretException(responseEntity);
+    }
+
+    JSONArray json = new JSONObject(responseEntity).getJSONArray("items");
+    return json.getJSONObject(0).getString("secret");
+  }
+
+  /**
+   * Create a secret given the name and value.
+   *
+   * @param name     Secret name.
+   * @param secret     Secret value.
+   * @throws JWTNotFoundException JWTNotFoundException
+   * @throws ProjectException ProjectException
+   * @throws SecretException SecretException
+   */
+  public static void createSecret(String name, String secret) throws
+    JWTNotFoundException, ProjectException, SecretException {
+    createSecret(name, secret, (String) null);
+  }
+
+  /**
+   * Create a secret given the name and optionally the owner if the secret is shared with the current project.
+   *
+   * @param name     Secret name.
+   * @param secret     Secret value.
+   * @param projectName     Name of the project to share the secret with.
+   * @throws JWTNotFoundException JWTNotFoundException
+   * @throws ProjectException ProjectException
+   * @throws SecretException SecretException
+   */
+  public static void createSecret(String name, String secret, String projectName) throws
+    JWTNotFoundException, ProjectException, SecretException {
+    createSecret(name, secret, Strings.isNullOrEmpty(projectName) ? null : getProjectIdByName(projectName));
+  }
+
+  private static void createSecret(String name, String secret, Integer scope) throws
+    JWTNotFoundException, SecretException {
+    LOG.log(Level.FINE, "Creating secret with name:{0}", new String[]{name});
+
+    JSONObject payload = new JSONObject();
+
+    if (scope == null) {
+      payload.put("visibility", "PRIVATE");
+    } else {
+      payload.put("scope", scope);
+      payload.put("visibility", "PROJECT");
+    }
+
+    payload.put("name", name);
+    payload.put("secret", secret);
+
+    RestResponse response = null;
+    try {
+      response = clientWrapper(payload, "/users/secrets",
+        HttpMethod.POST, null);
+    } catch (HTTPSClientInitializationException e) {
+      throw new SecretException(e.getMessage());
+    }
+
+    String responseEntity = response.getEntity();
+
+    if (response.getStatus() != Response.Status.OK.getStatusCode()) {
+      throw new SecretException(response.getStatus(), responseEntity);
+    }
+  }
+
+  /**
+   * Create many private secrets, sending up to hopsutil.rest.batch.parallelism requests at a time.
+   *
+   * @param secrets secret values by name.
+   * @return the result of every secret, in the iteration order of secrets. A failed secret does not stop the batch.
+   */
+  public static List<SecretResult> createSecrets(Map<String, String> secrets) {
+    return runSecretBatch(secrets.keySet(), name -> createSecret(name, secrets.get(name), (Integer) null));
+  }
+
+  /**
+   * Create many secrets shared with a project, sending up to hopsutil.rest.batch.parallelism requests at a time. The
+   * project is resolved once for the whole batch.
+   *
+   * @param secrets secret values by name.
+   * @param projectName Name of the project to share the secrets with.
+   * @return the result of every secret, in the iteration order of secrets. A failed secret does not stop the batch.
+   * @throws JWTNotFoundException JWTNotFoundException
+   * @throws ProjectException if the project cannot be resolved, in which case no secret is created.
+   */
+  public static List<SecretResult> createSecrets(Map<String, String> secrets, String projectName) throws
+    JWTNotFoundException, ProjectException {
+    Integer scope = Strings.isNullOrEmpty(projectName) ? null : getProjectIdByName(projectName);
+    return runSecretBatch(secrets.keySet(), name -> createSecret(name, secrets.get(name), scope));
+  }
+
+  /**
+   * Delete secret given a name.
+   *
+   * @param name     Secret name.
+   * @throws JWTNotFoundException JWTNotFoundException
+   * @throws SecretException      SecretException
+   */
+  public static void deleteSecret(String name) throws
+    JWTNotFoundException, SecretException {
+    LOG.log(Level.FINE, "Deleting secret with name:{0}", new String[]{name});
+
+    RestResponse response = null;
+    try {
+      response = clientWrapper(null, "/users/secrets/" + name,
+        HttpMethod.DELETE, null);
+    } catch (HTTPSClientInitializationException e) {
+      throw new SecretException(e.getMessage());
+    }
+    String responseEntity = response.getEntity();
+
+    if (response.getStatus() != Response.Status.OK.getStatusCode()) {
+      throw new SecretException(responseEntity);
+    }
+  }
+
+  /**
+   * Delete many secrets, sending up to hopsutil.rest.batch.parallelism requests at a time.
+   *
+   * @param names Secret names.
+   * @return the result of every secret, in the iteration order of names. A failed secret does not stop the batch.
+   */
+  public static List<SecretResult> deleteSecrets(Collection<String> names) {
+    return runSecretBatch(names, Hops::deleteSecret);
+  }
+
+  @FunctionalInterface
+  private interface SecretTask {
+    void run(String name) throws JWTNotFoundException, SecretException;
+  }
+
+  private static List<SecretResult> runSecretBatch(Collection<String> names, SecretTask task) {
+    List<SecretResult> results = new ArrayList<>(names.size());
+    if (names.isEmpty()) {
+      return results;
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(BATCH_PARALLELISM, names.size()), runnable -> {
+      Thread thread = new Thread(runnable, "hops-secrets-batch");
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      Map<String, Future<SecretException>> futures = new LinkedHashMap<>();
+      for (String name : names) {
+        futures.put(name, executor.submit(() -> {
+          try {
+            task.run(name);
+            return null;
+          } catch (SecretException e) {
+            return e;
+          } catch (JWTNotFoundException | RuntimeException e) {
+            return new SecretException(e.getMessage());
+          }
+        }));
+      }
+      for (Map.Entry<String, Future<SecretException>> future : futures.entrySet()) {
+        SecretException error;
+        try {
+          error = future.getValue().get();
+        } catch (ExecutionException e) {
+          error = new SecretException(e.getCause().getMessage());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          error = new SecretException("Interrupted");
+        }
+        if (error != null) {
+          LOG.log(Level.WARNING, "Secret operation failed for {0}: {1}",
+            new Object[]{future.getKey(), error.getMessage()});
+        }
+        results.add(new SecretResult(future.getKey(), error));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    return results;
+  }
+
+  /**
+   * Get the ID of a project by its name. IDs never change, so they are cached for the lifetime of the JVM.
+   *
+   * @param projectName Project name.
+   * @return Project ID.
+   * @throws JWTNotFoundException JWTNotFoundException
+   * @throws ProjectException ProjectException
+   */
+  private static Integer getProjectIdByName(String projectName) throws JWTNotFoundException, ProjectException {
+    Integer id = PROJECT_ID_CACHE.get(projectName);
+    if (id == null) {
+      id = getProjectInfo(projectName).getInt("projectId");
+      PROJECT_ID_CACHE.put(projectName, id);
+    }
+    return id;
+  }
+
+  protected static RestResponse clientWrapper(String path, String httpMethod, Map<String, Object> queryParams)
+      throws HTTPSClientInitializationException, JWTNotFoundException {
+    return clientWrapper(null, path, httpMethod, queryParams);
+  }
+  protected static RestResponse clientWrapper(
+      JSONObject json, String path, String httpMethod, Map<String, Object> queryParams) throws
+      HTTPSClientInitializationException, JWTNotFoundException {
+    return execute(httpMethod, path, queryParams, Collections.emptyMap(), json == null ? null : json.toString());
+  }
+
+  /**
+   * Send a request to the Hopsworks REST API over the configured {@link HttpTransport}.
+   *
+   * @param httpMethod HTTP method
+   * @param path resource path relative to the Hopsworks REST API.
+   * @param queryParams query parameters, may be null.
+   * @param headers additional request headers.
+   * @param body JSON request body, may be null.
+   * @return response
+   * @throws HTTPSClientInitializationException HTTPSClientInitializationException
+   * @throws JWTNotFoundException JWTNotFoundException
+   */
+  static RestResponse execute(String httpMethod, String path, Map<String, Object> queryParams,
+      Map<String, String> headers, String body) throws HTTPSClientInitializationException, JWTNotFoundException {
+    URI uri = buildUri(path, queryParams);
+    LOG.log(Level.FINE, "uri:" + uri);
+    Map<String, String> requestHeaders = new HashMap<>(headers);
+    //Read jwt and set it in header
+    requestHeaders.put(HttpHeaders.AUTHORIZATION, "Bearer " + getJwt().orElseThrow(IllegalArgumentException::new));
+    requestHeaders.put(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON);
+    HttpCompression.addHeaders(requestHeaders, body);
+    try {
+      for (int attempt = 0; ; attempt++) {
+        RestRateLimiter.acquire();
+        long start = System.nanoTime();
+        RestResponse response;
+        try {
+          response = getTransport().execute(httpMethod, uri, requestHeaders, body);
+        } catch (IOException e) {
+          HopsClientMetrics.recordRestCall(System.nanoTime() - start, -1);
+          throw e;
+        }
+        HopsClientMetrics.recordRestCall(System.nanoTime() - start, response.getStatus());
+        if (!RestRateLimiter.isThrottled(response) || attempt >= RestRateLimiter.MAX_RETRIES) {
+          return response;
+        }
+        RestRateLimiter.backoff(response, attempt);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Request to " + uri.getPath() + " failed", e);
+    }
+  }
+
+  /**
+   * Send a request with a streamed body and response, e.g. a file transfer, over the configured
+   * {@link HttpTransport}. Like {@link #execute} it is rate limited, retried while throttled and recorded in the
+   * client metrics.
+   *
+   * @param httpMethod HTTP method
+   * @param path resource path relative to the Hopsworks REST API.
+   * @param queryParams query parameters, may be null.
+   * @param headers additional request headers.
+   * @param contentType content type of the request body, may be null without a body.
+   * @param body opens the request body, may be null. It is called again when a throttled request is retried.
+   * @return response, to be closed by the caller.
+   * @throws HTTPSClientInitializationException HTTPSClientInitializationException
+   * @throws JWTNotFoundException JWTNotFoundException
+   * @throws IOException if the request could not be sent.
+   */
+  static StreamingResponse executeStreaming(String httpMethod, String path, Map<String, Object> queryParams,
+      Map<String, String> headers, String contentType, Supplier<InputStream> body)
+      throws HTTPSClientInitializationException, JWTNotFoundException, IOException {
+    URI uri = buildUri(path, queryParams);
+    LOG.log(Level.FINE, "uri:" + uri);
+    Map<String, String> requestHeaders = new HashMap<>(headers);
+    requestHeaders.put(HttpHeaders.AUTHORIZATION, "Bearer " + getJwt().orElseThrow(IllegalArgumentException::new));
+    for (int attempt = 0; ; attempt++) {
+      RestRateLimiter.acquire();
+      long start = System.nanoTime();
+      StreamingResponse response;
+      try {
+        response = getTransport().stream(httpMethod, uri, requestHeaders, contentType, body);
+      } catch (IOException e) {
+        HopsClientMetrics.recordRestCall(System.nanoTime() - start, -1);
+        throw e;
+      }
+      HopsClientMetrics.recordRestCall(System.nanoTime() - start, response.getStatus());
+      if (!RestRateLimiter.isThrottled(response.getStatus()) || attempt >= RestRateLimiter.MAX_RETRIES) {
+        return response;
+      }
+      RestRateLimiter.backoff(response.getHeader(RestRateLimiter.RETRY_AFTER_HEADER), attempt);
+      response.close();
+    }
+  }
+
+  private static URI buildUri(String path, Map<String, Object> queryParams) {
+    checkInitialized();
+    StringBuilder uri = new StringBuilder(getRestEndpoint()).append(Constants.SLASH_DELIMITER)
+        .append(Constants.HOPSWORKS_REST_RESOURCE);
+    try {
+      for (String segment : path.split(Constants.SLASH_DELIMITER)) {
+        if (!segment.isEmpty()) {
+          uri.append(Constants.SLASH_DELIMITER).append(URLEncoder.encode(segment, "UTF-8").replace("+", "%20"));
+        }
+      }
+      if (queryParams != null && !queryParams.isEmpty()) {
+        char separator = '?';
+        for (Map.Entry<String, Object> entry : queryParams.entrySet()) {
+          uri.append(separator).append(URLEncoder.encode(entry.getKey(), "UTF-8")).append('=')
+              .append(URLEncoder.encode(String.valueOf(entry.getValue()), "UTF-8"));
+          separator = '&';
+        }
+      }
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+    return URI.create(uri.toString());
+  }
+
+  private static HttpTransport getTransport() throws HTTPSClientInitializationException {
+    HttpTransport current = transport;
+    if (current == null) {
+      synchronized (Hops.class) {
+        current = transport;
+        if (current == null) {
+          //Jersey relies on runtime reflection that native images do not support without extensive configuration
+          current = createTransport(System.getProperty(Constants.HOPSUTIL_REST_TRANSPORT,
+              isNativeImage() ? "jdk" : "jersey"));
+          transport = current;
+        }
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Whether the code runs in a GraalVM native image.
+   */
+  static boolean isNativeImage() {
+    return System.getProperty(Constants.GRAALVM_IMAGE_CODE) != null;
+  }
+
+  private static HttpTransport createTransport(String name) throws HTTPSClientInitializationException {
+    switch (name.toLowerCase(Locale.ENGLISH)) {
+      case "apache":
+        return JerseyHttpTransport.pooled(createRestSSLContext(false));
+      case "jdk":
+        try {
+          //Only present in the Java 11 part of the multi-release jar, registered for reflection in native images
+          return (HttpTransport) Class.forName("io.hops.util.JdkHttpTransport")
+              .getDeclaredConstructor(SSLContext.class).newInstance(createRestSSLContext(true));
+        } catch (ReflectiveOperationException | LinkageError e) {
+          LOG.log(Level.WARNING, "The jdk transport requires Java 11 or newer, using jersey", e);
+        }
+        break;
+      default:
+        break;
+    }
+    return new JerseyHttpTransport(getClient());
+  }
+
+  /**
+   * SSL context trusting the Hopsworks domain CA, used by the REST transports.
+   *
+   * @param verifyHosts whether the trust managers apply the host rule of {@link #getHostnameVerifier()}, for clients
+   * that cannot be given a HostnameVerifier.
+   */
+  private static SSLContext createRestSSLContext(boolean verifyHosts) throws HTTPSClientInitializationException {
+    try {
+      KeyStore truststore = KeyStore.getInstance(KeyStore.getDefaultType());
+      try (FileInputStream trustStoreIS = new FileInputStream(domainCaTruststore)) {
+        truststore.load(trustStoreIS, null);
+      }
+      TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+      tmf.init(truststore);
+      SSLContext context = SSLContext.getInstance("TLS");
+      context.init(null, verifyHosts ? HostnameTrustManager.wrap(tmf.getTrustManagers(), getHostnameVerifier()) :
+          tmf.getTrustManagers(), null);
+      return context;
+    } catch (IOException | GeneralSecurityException e) {
+      throw new HTTPSClientInitializationException("Could not retrieve credentials from local working directory", e);
+    }
+  }
+
+  static HostnameVerifier getHostnameVerifier() {
+    return InsecureHostnameVerifier.INSTANCE;
+  }
+
+  /**
+   * Build a request to the Hopsworks REST API carrying the jwt of the job. The underlying client is created once and
+   * shared, so that connections to Hopsworks are kept alive across requests.
+   *
+   * @param path resource path relative to the Hopsworks REST API.
+   * @param queryParams query parameters, may be null.
+   * @return invocation builder
+   * @throws HTTPSClientInitializationException HTTPSClientInitializationException
+   * @throws JWTNotFoundException JWTNotFoundException
+   */
+  protected static Invocation.Builder requestBuilder(String path, Map<String, Object> queryParams)
+      throws HTTPSClientInitializationException, JWTNotFoundException {
+    checkInitialized();
+    WebTarget webTarget = getClient().target(Hops.getRestEndpoint() + "/").path(Constants.HOPSWORKS_REST_RESOURCE
+        + path);
+    if(queryParams!= null && !queryParams.isEmpty()){
+      for (Map.Entry<String, Object> entry : queryParams.entrySet()) {
+        webTarget = webTarget.queryParam(entry.getKey(), entry.getValue());
+      }
+    }
+    LOG.log(Level.FINE, "webTarget.getUri().getHost():" + webTarget.getUri().getHost());
+    LOG.log(Level.FINE, "webTarget.getUri().getPort():" + webTarget.getUri().getPort());
+    LOG.log(Level.FINE, "webTarget.getUri().getPath():" + webTarget.getUri().getPath());
+    //Read jwt and set it in header
+    return webTarget.request().header(HttpHeaders.AUTHORIZATION,
+        "Bearer " + getJwt().orElseThrow(IllegalArgumentException::new)).accept(MediaType.APPLICATION_JSON);
+  }
+
+  private static Client getClient() throws HTTPSClientInitializationException {
+    Client current = client;
+    if (current == null) {
+      synchronized (Hops.class) {
+        current = client;
+        if (current == null) {
+          try {
+            current = initClient();
+          } catch (KeyStoreException | IOException | NoSuchAlgorithmException | CertificateException e) {
+            throw new HTTPSClientInitializationException("Could not retrieve credentials from local working directory",
+                e);
+          }
+          client = current;
+        }
+      }
+    }
+    return current;
+  }
+
+
+  /**
+   * Re-read the keystore password and rebuild the REST client and transport on their next use, after the crypto
+   * material of the container was rotated.
+   *
+   * @return closes the replaced client and transport, to be run once requests in flight on them are done.
+   */
+  static synchronized Runnable reloadCryptoMaterial() {
+    String pwd = getCertPw();
+    keystorePwd = pwd;
+    truststorePwd = pwd;
+    Client oldClient = client;
+    HttpTransport oldTransport = transport;
+    client = null;
+    transport = null;
+    return () -> {
+      if (oldTransport != null) {
+        try {
+          oldTransport.close();
+        } catch (IOException e) {
+          LOG.log(Level.WARNING, "Could not close replaced REST transport", e);
+        }
+      }
+      if (oldClient != null) {
+        oldClient.close();
+      }
+    };
+  }
+
+  /**
+   * Get keystore password from local container.
+   *
+   * @return Certificate password.
+   */
+  private static String getCertPw() {
+    try (FileInputStream fis = new FileInputStream(Constants.CRYPTO_MATERIAL_PASSWORD)) {
+      StringBuilder sb = new StringBuilder();
+      int content;
+      while ((content = fis.read()) != -1) {
+        sb.append((char) content);
+      }
+      return sb.toString();
+    } catch (IOException ex) {
+      LOG.log(Level.SEVERE, null, ex);
+    }
+    return null;
+  }
+
+  private static synchronized Optional<String> getJwt() throws JWTNotFoundException {
+    String jwt = null;
+    try (FileChannel fc = FileChannel.open(Paths.get(Constants.JWT_FILENAME), StandardOpenOption.READ)) {
+      FileLock fileLock = fc.tryLock(0, Long.MAX_VALUE, true);
+      try {
+        short numRetries = 5;
+        short retries = 0;
+        while (fileLock == null && retries < numRetries) {
+          LOG.log(Level.FINEST, "Waiting for lock on jwt file at:" + Constants.JWT_FILENAME);
+          Thread.sleep(1000);
+          fileLock = fc.tryLock(0, Long.MAX_VALUE, true);
+          retries++;
+        }
+        //If could not acquire lock in reasonable time, throw exception
+        if (fileLock == null) {
+          throw new JWTNotFoundException("Could not read jwt token from local container, possibly another process has" +
+            " acquired the lock");
+        }
+        ByteBuffer buf = ByteBuffer.allocateDirect(512);
+        fc.read(buf);
+        buf.flip();
+        jwt = StandardCharsets.UTF_8.decode(buf).toString();
+      } catch (InterruptedException e) {
+        LOG.log(Level.WARNING, "JWT waiting thread was interrupted.", e);
+      } finally {
+        if (fileLock != null) {
+          fileLock.release();
+        }
+      }
+    } catch (IOException e) {
+      LOG.log(Level.SEVERE,"Could not read jwt token from local container.", e);
+      throw new JWTNotFoundException("Could not read jwt token from local container." + e.getMessage(), e);
+    }
+    return Optional.ofNullable(jwt);
+  }
+
+  /////////////////////////////////////////////
+
+  /**
+   * Get Kafka brokers endpoints as a List object.
+   *
+   * @return broker endpoints.
+   */
+  public static List<String> getBrokerEndpointsList() {
+    return brokerEndpointsList;
+  }
+
+  /**
+   * Get Kafka brokers endpoints as a String object.
+   *
+   * @return broker endpoints.
+   */
+  public static String getBrokerEndpoints() {
+    return brokerEndpoints;
+  }
+
+  /**
+   * Get Project ID of current job.
+   *
+   * @return HopsWorks project ID.
+   */
+  public static Integer getProjectId() {
+    return projectId;
+  }
+
+  /**
+   * Get REST Endpoint of Hopsworks.
+   *
+   * @return REST endpoint.
+   */
+  public static String getRestEndpoint() {
+    return restEndpoint;
+  }
+
+  /**
+   * Get keystore location.
+   *
+   * @return keystore location.
+   */
+  public static String getKeyStore() {
+    return keyStore;
+  }
+
+  /**
+   * Get truststore. location.
+   *
+   * @return truststore location
+   */
+  public static String getTrustStore() {
+    return trustStore;
+  }
+
+  /**
+   * Get keystore password.
+   *
+   * @return keystore password
+   */
+  public static String getKeystorePwd() {
+    return keystorePwd;
+  }
+
+  /**
+   * Get truststore password.
+   *
+   * @return truststore password.
+   */
+  public static String getTruststorePwd() {
+    return truststorePwd;
+  }
+
+  /**
+   * Get the location of the truststore with the Hopsworks domain CA.
+   *
+   * @return domain CA truststore location.
+   */
+  public static String getDomainCaTruststore() {
+    return domainCaTruststore;
+  }
+
+  /**
+   * Get HopsWorks project name.
+   *
+   * @return project name.
+   */
+  public static String getProjectName() {
+    return projectName;
+  }
+
+  /**
+   * Get HopsWorks elasticsearch endpoint.
+   *
+   * @return elasticsearch endpoint.
+   */
+  public static String getElasticEndPoint() {
+    return elasticEndPoint;
+  }
+
+  /**
+   * Get HopsWorks job name.
+   *
+   * @return job name.
+   */
+  public static String getJobName() {
+    return jobName;
+  }
+
+  /**
+   * Get YARN applicationId for this job.
+   *
+   * @return applicationId.
+   */
+  public static String getAppId() {
+    return appId;
+  }
+
+  /**
+   * Get JobType.
+   *
+   * @return JobType.
+   */
+  public static String getJobType() {
+    return jobType;
+  }
+
+  /**
+   * Populates the Kafka broker endpoints List with the value of the java system property passed by Hopsworks.
+   *
+   * @param addresses addresses
+   */
+  private static void parseBrokerEndpoints(String addresses) {
+    brokerEndpoints = addresses;
+    brokerEndpointsList = Arrays.asList(addresses.split(","));
+  }
+
+  private static Client initClient() throws KeyStoreException, IOException, NoSuchAlgorithmException,
+      CertificateException {
+    KeyStore truststore = KeyStore.getInstance(KeyStore.getDefaultType());
+
+    try (FileInputStream trustStoreIS = new FileInputStream(domainCaTruststore)) {
+      truststore.load(trustStoreIS, null);
+    }
+    //Encoders decode compressed responses and compress requests sent with a Content-Encoding header
+    return ClientBuilder.newBuilder().trustStore(truststore).
+        hostnameVerifier(InsecureHostnameVerifier.INSTANCE).register(GZipEncoder.class).register(DeflateEncoder.class)
+        .build();
+  }
+
+  private static class InsecureHostnameVerifier implements HostnameVerifier {
+
+    static InsecureHostnameVerifier INSTANCE = new InsecureHostnameVerifier();
+
+    InsecureHostnameVerifier() {
+    }
+
+    @Override
+    public boolean verify(String string, SSLSession ssls) {
+      return insecure || string.equals(restEndpoint.split(":")[0]);
+    }
+  }
+
+  /**
+   * Get a valid elastic index name for the current project.
+   * @param index index to get name for
+   * @return Elastic index name
+   */
+  public static String getElasticIndex(String index){
+    return getProjectName() + "_" + index;
+  }
+  
+  /**
+   * Get a jwt token to be used with Elastic. The token is cached and a new one is only requested from Hopsworks when
+   * the cached token is about to expire.
+   * @return elastic auth token
+   * @throws JWTNotFoundException JWTNotFoundException
+   * @throws ElasticAuthorizationTokenException ElasticAuthorizationTokenException
+   */
+  public static String getElasticAuthorizationToken()
+      throws JWTNotFoundException, ElasticAuthorizationTokenException {
+    String token = elasticToken;
+    if (token != null && System.currentTimeMillis() < elasticTokenExpiry) {
+      return token;
+    }
+    synchronized (Hops.class) {
+      if (elasticToken != null && System.currentTimeMillis() < elasticTokenExpiry) {
+        return elasticToken;
+      }
+      token = requestElasticAuthorizationToken();
+      elasticTokenExpiry = getTokenExpiry(token);
+      elasticToken = token;
+      return token;
+    }
+  }
+
+  private static String requestElasticAuthorizationToken()
+      throws JWTNotFoundException, ElasticAuthorizationTokenException {
+    RestResponse response;
+    try {
+      response =
+          clientWrapper(Constants.SLASH_DELIMITER
+                  + Constants.HOPSWORKS_REST_ELASTIC_RESOURCE
+                  + Constants.SLASH_DELIMITER
+                  + Constants.HOPSWORKS_REST_JWT_RESOURCE
+                  + Constants.SLASH_DELIMITER
+                  + Hops.getProjectId(),
+          HttpMethod.GET, null);
+    } catch (HTTPSClientInitializationException e) {
+      throw new ElasticAuthorizationTokenException(e.getMessage());
+    }
+    final String responseEntity = response.getEntity();
+
+    LOG.log(Level.FINE, "Elastic token response status:" + response.getStatus());
+    if (response.getStatus() != Response.Status.OK.getStatusCode()) {
+      throw new ElasticAuthorizationTokenException(responseEntity);
+    }
+
+
+    JSONObject jsonResponse = new JSONObject(responseEntity);
+    if(!jsonResponse.has("token"))
+      throw new ElasticAuthorizationTokenException("Couldn't get " +
+          "authorization token for elastic.");
+
+    String token = jsonResponse.getString("token");
+    if(token.isEmpty())
+      throw new ElasticAuthorizationTokenException("Couldn't get " +
+          "authorization token for elastic.");
+
+    return "Bearer " + token;
+  }
+
+  /**
+   * Time until which a bearer token can be reused, a minute before the exp claim of the jwt. Tokens that cannot be
+   * parsed are reused for a minute.
+   */
+  private static long getTokenExpiry(String bearerToken) {
+    long now = System.currentTimeMillis();
+    try {
+      String[] parts = bearerToken.substring(bearerToken.indexOf(' ') + 1).split("\\.");
+      JSONObject claims = new JSONObject(new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8));
+      if (claims.has("exp")) {
+        return Math.max(now, claims.getLong("exp") * 1000 - ELASTIC_TOKEN_EXPIRY_MARGIN_MS);
+      }
+    } catch (RuntimeException e) {
+      LOG.log(Level.FINE, "Could not read expiration of elastic token", e);
+    }
+    return now + ELASTIC_TOKEN_EXPIRY_MARGIN_MS;
+  }
+
+  /**
+   * Get Elasticsearch configuration to use with spark connector.
+   * @param index index
+   * @return elasticsearch configurations
+   * @throws ElasticAuthorizationTokenException ElasticAuthorizationTokenException
+   * @throws JWTNotFoundException JWTNotFoundException
+   */
+  public static Map<String, String> getElasticConfiguration(String index)
+      throws ElasticAuthorizationTokenException, JWTNotFoundException {
+    Map<String, String> configs = new HashMap<>();
+    configs.put("es.net.ssl","true");
+    configs.put("es.nodes.wan.only", "true");
+    configs.put("es.nodes", getElasticEndPoint());
+    configs.put("es.net.ssl.keystore.location", getKeyStore());
+    configs.put("es.net.ssl.keystore.pass", getKeystorePwd());
+    configs.put("es.net.ssl.truststore.location", getTrustStore());
+    configs.put("es.net.ssl.truststore.pass", getTruststorePwd());
+    configs.put("es.net.http.header.Authorization", getElasticAuthorizationToken());
+    configs.put("es.resource", getElasticIndex(index));
+    return configs;
+  }
+
+  /**
+   * Set environment variables. The environment cannot be modified in a native image, there the call only logs a
+   * warning and leaves the environment unchanged.
+   * @param key
+   * @param value
+   * @deprecated modifies the environment through JDK internals, which is not thread-safe and fails on recent JDKs
+   * and in native images. Credentials are available from {@link io.hops.util.cloud.CredentialRegistry}.
+   */
+  @Deprecated
+  public static void setEnv(String key, String value) {
+    if (isNativeImage()) {
+      LOG.log(Level.WARNING, "Not setting environment variable {0}, the environment cannot be modified in a native "
+        + "image", key);
+      return;
+    }
+    try {
+      Map<String, String> env = System.getenv();
+      Class<?> cl = env.getClass();
+      Field field = cl.getDeclaredField("m");
+      field.setAccessible(true);
+      Map<String, String> writableEnv = (Map<String, String>) field.get(env);
+      writableEnv.put(key, value);
+    } catch (Exception e) {
+      throw new IllegalStateException("Failed to set environment variable", e);
+    }
+  }
+}
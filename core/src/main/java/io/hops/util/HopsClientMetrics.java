@@ -0,0 +1,180 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the work the Hops client does in this JVM: REST requests and their latency, responses served from the
+ * {@link RestResponseCache}, throttled requests and credential refreshes, and the time spent in setup.
+ * <p>
+ * Counters are cumulative for the lifetime of the JVM. They are published to Spark by
+ * {@link io.hops.util.spark.HopsMetricsPlugin}.
+ */
+public final class HopsClientMetrics {
+
+  private static final LongAdder REST_CALLS = new LongAdder();
+  private static final LongAdder REST_ERRORS = new LongAdder();
+  private static final LongAdder REST_THROTTLED = new LongAdder();
+  private static final LongAdder REST_LATENCY_NANOS = new LongAdder();
+  private static final LongAccumulator REST_MAX_LATENCY_NANOS = new LongAccumulator(Math::max, 0);
+  private static final LongAdder CREDENTIAL_REFRESHES = new LongAdder();
+  private static volatile long setupNanos;
+
+  private HopsClientMetrics() {
+  }
+
+  static void recordRestCall(long latencyNanos, int status) {
+    REST_CALLS.increment();
+    REST_LATENCY_NANOS.add(latencyNanos);
+    REST_MAX_LATENCY_NANOS.accumulate(latencyNanos);
+    if (status == RestRateLimiter.TOO_MANY_REQUESTS) {
+      REST_THROTTLED.increment();
+    } else if (status < 0 || status >= 500) {
+      REST_ERRORS.increment();
+    }
+  }
+
+  static void recordCredentialRefresh() {
+    CREDENTIAL_REFRESHES.increment();
+  }
+
+  static void recordSetup(long nanos) {
+    setupNanos = nanos;
+  }
+
+  /**
+   * @return the current value of all counters.
+   */
+  public static Snapshot snapshot() {
+    return new Snapshot(REST_CALLS.sum(), REST_ERRORS.sum(), REST_THROTTLED.sum(),
+      TimeUnit.NANOSECONDS.toMillis(REST_LATENCY_NANOS.sum()),
+      TimeUnit.NANOSECONDS.toMillis(REST_MAX_LATENCY_NANOS.get()),
+      RestResponseCache.getHits(), RestResponseCache.getMisses(), CREDENTIAL_REFRESHES.sum(),
+      TimeUnit.NANOSECONDS.toMillis(setupNanos));
+  }
+
+  /**
+   * Immutable value of the counters, sent from the executors to the driver.
+   */
+  public static final class Snapshot implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long restCalls;
+    private final long restErrors;
+    private final long restThrottled;
+    private final long restLatencyMs;
+    private final long restMaxLatencyMs;
+    private final long cacheHits;
+    private final long cacheMisses;
+    private final long credentialRefreshes;
+    private final long setupMs;
+
+    public Snapshot(long restCalls, long restErrors, long restThrottled, long restLatencyMs, long restMaxLatencyMs,
+      long cacheHits, long cacheMisses, long credentialRefreshes, long setupMs) {
+      this.restCalls = restCalls;
+      this.restErrors = restErrors;
+      this.restThrottled = restThrottled;
+      this.restLatencyMs = restLatencyMs;
+      this.restMaxLatencyMs = restMaxLatencyMs;
+      this.cacheHits = cacheHits;
+      this.cacheMisses = cacheMisses;
+      this.credentialRefreshes = credentialRefreshes;
+      this.setupMs = setupMs;
+    }
+
+    /**
+     * Sum of two snapshots, e.g. of two executors. Maximum latencies are combined with max.
+     *
+     * @param other snapshot
+     * @return sum
+     */
+    public Snapshot plus(Snapshot other) {
+      return new Snapshot(restCalls + other.restCalls, restErrors + other.restErrors,
+        restThrottled + other.restThrottled, restLatencyMs + other.restLatencyMs,
+        Math.max(restMaxLatencyMs, other.restMaxLatencyMs), cacheHits + other.cacheHits,
+        cacheMisses + other.cacheMisses, credentialRefreshes + other.credentialRefreshes, setupMs + other.setupMs);
+    }
+
+    /**
+     * @return number of requests sent to Hopsworks, including retries.
+     */
+    public long getRestCalls() {
+      return restCalls;
+    }
+
+    /**
+     * @return number of requests that failed with an I/O error or a 5xx status.
+     */
+    public long getRestErrors() {
+      return restErrors;
+    }
+
+    /**
+     * @return number of requests rejected with 429 Too Many Requests.
+     */
+    public long getRestThrottled() {
+      return restThrottled;
+    }
+
+    /**
+     * @return total time spent waiting for Hopsworks responses.
+     */
+    public long getRestLatencyMs() {
+      return restLatencyMs;
+    }
+
+    public long getRestMaxLatencyMs() {
+      return restMaxLatencyMs;
+    }
+
+    public long getCacheHits() {
+      return cacheHits;
+    }
+
+    public long getCacheMisses() {
+      return cacheMisses;
+    }
+
+    /**
+     * @return fraction of cacheable lookups served without a request, 0 if there were none.
+     */
+    public double getCacheHitRate() {
+      long lookups = cacheHits + cacheMisses;
+      return lookups == 0 ? 0 : (double) cacheHits / lookups;
+    }
+
+    public long getCredentialRefreshes() {
+      return credentialRefreshes;
+    }
+
+    /**
+     * @return time spent in the setup of Hops, summed over JVMs for combined snapshots.
+     */
+    public long getSetupMs() {
+      return setupMs;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("restCalls=%d, restErrors=%d, restThrottled=%d, restLatencyMs=%d, restMaxLatencyMs=%d, "
+          + "cacheHitRate=%.2f, credentialRefreshes=%d, setupMs=%d", restCalls, restErrors, restThrottled,
+        restLatencyMs, restMaxLatencyMs, getCacheHitRate(), credentialRefreshes, setupMs);
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509ExtendedTrustManager;
+import java.net.Socket;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+
+/**
+ * Trust manager that verifies the certificate chain with its delegate and accepts the server host when the
+ * {@link HostnameVerifier} does, falling back to the standard endpoint identification otherwise. Used by HTTP clients
+ * that identify endpoints in the trust manager and cannot be given a HostnameVerifier, such as the JDK HttpClient.
+ */
+final class HostnameTrustManager extends X509ExtendedTrustManager {
+
+  private final X509ExtendedTrustManager delegate;
+  private final HostnameVerifier verifier;
+
+  private HostnameTrustManager(X509ExtendedTrustManager delegate, HostnameVerifier verifier) {
+    this.delegate = delegate;
+    this.verifier = verifier;
+  }
+
+  /**
+   * Wrap the X509 trust managers, other trust managers are returned as they are.
+   */
+  static TrustManager[] wrap(TrustManager[] trustManagers, HostnameVerifier verifier) {
+    TrustManager[] wrapped = new TrustManager[trustManagers.length];
+    for (int i = 0; i < trustManagers.length; i++) {
+      wrapped[i] = trustManagers[i] instanceof X509ExtendedTrustManager ?
+        new HostnameTrustManager((X509ExtendedTrustManager) trustManagers[i], verifier) : trustManagers[i];
+    }
+    return wrapped;
+  }
+
+  @Override
+  public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket)
+    throws CertificateException {
+    SSLSession session = socket instanceof SSLSocket ? ((SSLSocket) socket).getHandshakeSession() : null;
+    if (session != null && verifier.verify(session.getPeerHost(), session)) {
+      delegate.checkServerTrusted(chain, authType);
+    } else {
+      delegate.checkServerTrusted(chain, authType, socket);
+    }
+  }
+
+  @Override
+  public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine)
+    throws CertificateException {
+    SSLSession session = engine == null ? null : engine.getHandshakeSession();
+    if (session != null && verifier.verify(session.getPeerHost(), session)) {
+      delegate.checkServerTrusted(chain, authType);
+    } else {
+      delegate.checkServerTrusted(chain, authType, engine);
+    }
+  }
+
+  @Override
+  public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+    delegate.checkServerTrusted(chain, authType);
+  }
+
+  @Override
+  public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket)
+    throws CertificateException {
+    delegate.checkClientTrusted(chain, authType, socket);
+  }
+
+  @Override
+  public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine)
+    throws CertificateException {
+    delegate.checkClientTrusted(chain, authType, engine);
+  }
+
+  @Override
+  public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+    delegate.checkClientTrusted(chain, authType);
+  }
+
+  @Override
+  public X509Certificate[] getAcceptedIssuers() {
+    return delegate.getAcceptedIssuers();
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Content encoding of REST requests and responses.
+ * <p>
+ * Responses are always negotiated with Accept-Encoding, unless the hopsutil.rest.compression system property is
+ * false. Request bodies are gzipped only if they are larger than the hopsutil.rest.compression.threshold system
+ * property in bytes, which is disabled by default as it requires request decompression on the Hopsworks side.
+ */
+final class HttpCompression {
+
+  static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+  static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+  static final String GZIP = "gzip";
+  static final String DEFLATE = "deflate";
+  static final String ACCEPT_ENCODING = GZIP + ", " + DEFLATE;
+
+  private static final boolean ENABLED = Boolean.parseBoolean(
+    System.getProperty(Constants.HOPSUTIL_REST_COMPRESSION, "true"));
+  private static final int REQUEST_THRESHOLD = Integer.getInteger(Constants.HOPSUTIL_REST_COMPRESSION_THRESHOLD, -1);
+
+  private HttpCompression() {
+  }
+
+  /**
+   * Add the encoding headers for a request with the given body.
+   *
+   * @param headers request headers
+   * @param body request body, may be null.
+   */
+  static void addHeaders(Map<String, String> headers, String body) {
+    if (!ENABLED) {
+      return;
+    }
+    headers.put(ACCEPT_ENCODING_HEADER, ACCEPT_ENCODING);
+    //Length in chars is a lower bound of the length in bytes, good enough for a threshold
+    if (REQUEST_THRESHOLD >= 0 && body != null && body.length() > REQUEST_THRESHOLD) {
+      headers.put(CONTENT_ENCODING_HEADER, GZIP);
+    }
+  }
+
+  static byte[] gzip(String body) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(body.length() / 4 + 64);
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(body.getBytes(StandardCharsets.UTF_8));
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Decode a response body.
+   *
+   * @param body raw body
+   * @param contentEncoding value of the Content-Encoding header, may be null.
+   * @return decoded body as UTF-8 string
+   * @throws IOException if the body cannot be decoded.
+   */
+  static String decode(byte[] body, String contentEncoding) throws IOException {
+    if (body == null) {
+      return null;
+    }
+    String encoding = contentEncoding == null ? "" : contentEncoding.trim().toLowerCase(Locale.ENGLISH);
+    InputStream in;
+    switch (encoding) {
+      case GZIP:
+      case "x-gzip":
+        in = new GZIPInputStream(new ByteArrayInputStream(body));
+        break;
+      case DEFLATE:
+        in = new InflaterInputStream(new ByteArrayInputStream(body));
+        break;
+      default:
+        return new String(body, StandardCharsets.UTF_8);
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream(body.length * 4);
+    try (InputStream decoded = in) {
+      byte[] buf = new byte[8192];
+      int read;
+      while ((read = decoded.read(buf)) != -1) {
+        out.write(buf, 0, read);
+      }
+    }
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Transport used by {@link Hops} to send requests to the Hopsworks REST API.
+ * <p>
+ * The implementation is selected with the hopsutil.rest.transport system property:
+ * <ul>
+ *   <li>jersey, the default, Jersey with the JDK HttpURLConnection connector.</li>
+ *   <li>apache, Jersey with the Apache connector and a connection pool.</li>
+ *   <li>jdk, the JDK HttpClient which multiplexes concurrent requests over one HTTP/2 connection. Requires Java 11,
+ *   on older runtimes the default transport is used.</li>
+ * </ul>
+ */
+public interface HttpTransport extends Closeable {
+
+  /**
+   * Send a request and read the full response.
+   *
+   * @param method HTTP method
+   * @param uri request URI
+   * @param headers request headers
+   * @param body JSON request body, may be null.
+   * @return response
+   * @throws IOException if the request could not be sent.
+   */
+  RestResponse execute(String method, URI uri, Map<String, String> headers, String body) throws IOException;
+
+  /**
+   * Send a request with a streamed body and return the response before its body is read, used for file transfers.
+   *
+   * @param method HTTP method
+   * @param uri request URI
+   * @param headers request headers
+   * @param contentType content type of the request body, may be null without a body.
+   * @param body opens the request body, may be null. It is only called once per request.
+   * @return response, to be closed by the caller.
+   * @throws IOException if the request could not be sent.
+   */
+  StreamingResponse stream(String method, URI uri, Map<String, String> headers, String contentType,
+    Supplier<InputStream> body) throws IOException;
+}
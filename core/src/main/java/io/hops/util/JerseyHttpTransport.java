@@ -0,0 +1,163 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util;
+
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.RequestEntityProcessing;
+import org.glassfish.jersey.message.DeflateEncoder;
+import org.glassfish.jersey.message.GZipEncoder;
+
+import javax.net.ssl.SSLContext;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * {@link HttpTransport} on top of a Jersey client.
+ */
+class JerseyHttpTransport implements HttpTransport {
+
+  private static final int MAX_CONNECTIONS = 64;
+
+  private final Client client;
+  private final boolean owned;
+
+  /**
+   * Transport sharing an existing client, which is not closed with the transport.
+   *
+   * @param client jersey client
+   */
+  JerseyHttpTransport(Client client) {
+    this.client = client;
+    this.owned = false;
+  }
+
+  private JerseyHttpTransport(Client client, boolean owned) {
+    this.client = client;
+    this.owned = owned;
+  }
+
+  /**
+   * Transport using the Apache connector with a pool of keep-alive connections.
+   *
+   * @param sslContext SSL context trusting the Hopsworks domain CA.
+   * @return transport
+   */
+  static JerseyHttpTransport pooled(SSLContext sslContext) {
+    Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+      .register("http", PlainConnectionSocketFactory.getSocketFactory())
+      .register("https", new SSLConnectionSocketFactory(sslContext, Hops.getHostnameVerifier()))
+      .build();
+    PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(registry);
+    //All requests go to the same Hopsworks endpoint
+    connectionManager.setMaxTotal(MAX_CONNECTIONS);
+    connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS);
+    ClientConfig config = new ClientConfig()
+      .connectorProvider(new ApacheConnectorProvider())
+      .property(ApacheClientProperties.CONNECTION_MANAGER, connectionManager);
+    return new JerseyHttpTransport(ClientBuilder.newBuilder().withConfig(config).sslContext(sslContext)
+      .hostnameVerifier(Hops.getHostnameVerifier()).register(GZipEncoder.class).register(DeflateEncoder.class)
+      .build(), true);
+  }
+
+  @Override
+  public RestResponse execute(String method, URI uri, Map<String, String> headers, String body) throws IOException {
+    Invocation.Builder builder = client.target(uri).request();
+    for (Map.Entry<String, String> header : headers.entrySet()) {
+      builder = builder.header(header.getKey(), header.getValue());
+    }
+    Entity<String> entity = Entity.entity(body == null ? "" : body, MediaType.APPLICATION_JSON);
+    Response response;
+    try {
+      switch (method) {
+        case HttpMethod.PUT:
+          response = builder.put(entity);
+          break;
+        case HttpMethod.POST:
+          response = builder.post(entity);
+          break;
+        case HttpMethod.GET:
+          response = builder.get();
+          break;
+        case HttpMethod.DELETE:
+          response = builder.delete();
+          break;
+        default:
+          throw new IllegalArgumentException("Unsupported method:" + method);
+      }
+      return RestResponse.of(response);
+    } catch (ProcessingException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+  }
+
+  @Override
+  public StreamingResponse stream(String method, URI uri, Map<String, String> headers, String contentType,
+    Supplier<InputStream> body) throws IOException {
+    Invocation.Builder builder = client.target(uri).request();
+    for (Map.Entry<String, String> header : headers.entrySet()) {
+      builder = builder.header(header.getKey(), header.getValue());
+    }
+    try {
+      Response response;
+      if (body == null) {
+        response = builder.method(method);
+      } else {
+        //Send the body as it is read instead of buffering it to compute its length
+        response = builder.property(ClientProperties.REQUEST_ENTITY_PROCESSING, RequestEntityProcessing.CHUNKED)
+          .method(method, Entity.entity(body.get(), contentType));
+      }
+      Map<String, String> responseHeaders = new HashMap<>();
+      for (String name : response.getStringHeaders().keySet()) {
+        responseHeaders.put(name, response.getHeaderString(name));
+      }
+      if (!response.hasEntity()) {
+        response.close();
+        return new StreamingResponse(response.getStatus(), responseHeaders, new ByteArrayInputStream(new byte[0]));
+      }
+      //Closing the entity stream releases the connection
+      return new StreamingResponse(response.getStatus(), responseHeaders, response.readEntity(InputStream.class));
+    } catch (ProcessingException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+  }
+
+  @Override
+  public void close() {
+    if (owned) {
+      client.close();
+    }
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+import javax.ws.rs.core.Response;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Client side rate limiting of requests to the Hopsworks REST API, so that thousands of executors starting at once
+ * do not overload the control plane.
+ * <p>
+ * Three mechanisms are combined, all configured with system properties:
+ * <ul>
+ *   <li>hopsutil.rest.ratelimit.permits, a token bucket of requests per second for the whole JVM. Disabled by
+ *   default.</li>
+ *   <li>hopsutil.rest.startup.spread.ms, the requests of a Spark executor are held back until a random but stable
+ *   delay derived from the executor ID has passed since its first request, spreading the startup requests of a job
+ *   over this window. Disabled by default.</li>
+ *   <li>429 and 503 responses pause all requests of the JVM for the time given by Retry-After, or an exponential
+ *   backoff without it, and are retried up to hopsutil.rest.ratelimit.retries times.</li>
+ * </ul>
+ */
+final class RestRateLimiter {
+
+  private static final Logger LOG = Logger.getLogger(RestRateLimiter.class.getName());
+
+  static final int TOO_MANY_REQUESTS = 429;
+  static final int MAX_RETRIES = Integer.getInteger(Constants.HOPSUTIL_REST_RATELIMIT_RETRIES, 3);
+  static final String RETRY_AFTER_HEADER = "Retry-After";
+  private static final long BASE_BACKOFF_MS = 500;
+  private static final long MAX_BACKOFF_MS = 60000;
+
+  private static final RateLimiter LIMITER = createLimiter();
+  private static final long STARTUP_SPREAD_MS = Long.getLong(Constants.HOPSUTIL_REST_STARTUP_SPREAD_MS, 0L);
+  //Time before which no request is sent, 0 until the first request has computed it
+  private static volatile long startAt = STARTUP_SPREAD_MS <= 0 ? 1 : 0;
+  private static volatile long pausedUntil;
+
+  private RestRateLimiter() {
+  }
+
+  private static RateLimiter createLimiter() {
+    double permits = Double.parseDouble(System.getProperty(Constants.HOPSUTIL_REST_RATELIMIT_PERMITS, "0"));
+    return permits > 0 ? RateLimiter.create(permits) : null;
+  }
+
+  /**
+   * Block until the next request may be sent.
+   */
+  static void acquire() {
+    long start = startAt;
+    if (start == 0) {
+      start = spreadStartup();
+    }
+    long pause = Math.max(start, pausedUntil) - System.currentTimeMillis();
+    if (pause > 0) {
+      sleep(pause);
+    }
+    if (LIMITER != null) {
+      LIMITER.acquire();
+    }
+  }
+
+  /**
+   * Whether the response asks the client to slow down.
+   *
+   * @param response response
+   * @return true for 429 and 503 responses.
+   */
+  static boolean isThrottled(RestResponse response) {
+    return isThrottled(response.getStatus());
+  }
+
+  /**
+   * Whether a response status asks the client to slow down.
+   *
+   * @param status HTTP status code
+   * @return true for 429 and 503.
+   */
+  static boolean isThrottled(int status) {
+    return status == TOO_MANY_REQUESTS || status == Response.Status.SERVICE_UNAVAILABLE.getStatusCode();
+  }
+
+  /**
+   * Pause all requests of the JVM as requested by a throttled response.
+   *
+   * @param response throttled response
+   * @param attempt number of the failed attempt, starting at 0.
+   */
+  static void backoff(RestResponse response, int attempt) {
+    backoff(response.getHeader(RETRY_AFTER_HEADER), attempt);
+  }
+
+  /**
+   * Pause all requests of the JVM as requested by a throttled response.
+   *
+   * @param retryAfter value of the Retry-After header of the response, may be null.
+   * @param attempt number of the failed attempt, starting at 0.
+   */
+  static void backoff(String retryAfter, int attempt) {
+    long wait = retryAfterMillis(retryAfter);
+    if (wait < 0) {
+      wait = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << attempt);
+      //Jitter so that throttled clients do not retry in lockstep
+      wait += (long) (Math.random() * wait);
+    }
+    LOG.log(Level.FINE, "Throttled by Hopsworks, pausing requests for {0} ms", wait);
+    long until = System.currentTimeMillis() + wait;
+    synchronized (RestRateLimiter.class) {
+      if (until > pausedUntil) {
+        pausedUntil = until;
+      }
+    }
+  }
+
+  private static long retryAfterMillis(String retryAfter) {
+    if (retryAfter == null || retryAfter.isEmpty()) {
+      return -1;
+    }
+    try {
+      return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+    } catch (NumberFormatException e) {
+      try {
+        ZonedDateTime date = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+        return Math.max(0, date.toInstant().toEpochMilli() - System.currentTimeMillis());
+      } catch (DateTimeParseException ex) {
+        return -1;
+      }
+    }
+  }
+
+  /**
+   * Compute the start of the executor once. Every caller then waits for it in acquire, outside of the lock.
+   */
+  private static synchronized long spreadStartup() {
+    if (startAt != 0) {
+      return startAt;
+    }
+    long delay = 0;
+    String executorId = getExecutorId();
+    if (executorId != null && !"driver".equals(executorId)) {
+      delay = new Random(executorId.hashCode()).nextInt((int) Math.min(Integer.MAX_VALUE, STARTUP_SPREAD_MS));
+      LOG.log(Level.FINE, "Delaying requests of executor {0} by {1} ms", new Object[]{executorId, delay});
+    }
+    startAt = System.currentTimeMillis() + delay;
+    return startAt;
+  }
+
+  private static String getExecutorId() {
+    try {
+      //Spark is not a dependency of the core classes
+      Class<?> sparkEnv = Class.forName("org.apache.spark.SparkEnv");
+      Object env = sparkEnv.getMethod("get").invoke(null);
+      return env == null ? null : (String) sparkEnv.getMethod("executorId").invoke(env);
+    } catch (ReflectiveOperationException | LinkageError e) {
+      //Not running in Spark
+      return null;
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Fully read response of the Hopsworks REST API, which unlike a JAX-RS {@link Response} can be shared between
+ * callers and kept in the {@link RestResponseCache}.
+ */
+public final class RestResponse {
+
+  private final int status;
+  private final Map<String, String> headers;
+  private final String entity;
+
+  /**
+   * Create a response.
+   *
+   * @param status HTTP status code
+   * @param headers response headers, the first value of each header is enough.
+   * @param entity response body, may be null.
+   */
+  public RestResponse(int status, Map<String, String> headers, String entity) {
+    this.status = status;
+    this.headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    this.headers.putAll(headers);
+    this.entity = entity;
+  }
+
+  /**
+   * Read the entity of the response and close it.
+   *
+   * @param response JAX-RS response
+   * @return rest response
+   */
+  static RestResponse of(Response response) {
+    try {
+      Map<String, String> headers = new HashMap<>();
+      for (String name : response.getStringHeaders().keySet()) {
+        headers.put(name, response.getHeaderString(name));
+      }
+      String entity = response.hasEntity() ? response.readEntity(String.class) : null;
+      return new RestResponse(response.getStatus(), headers, entity);
+    } finally {
+      response.close();
+    }
+  }
+
+  public int getStatus() {
+    return status;
+  }
+
+  public Response.Status.Family getFamily() {
+    return Response.Status.Family.familyOf(status);
+  }
+
+  public String getHeader(String name) {
+    return headers.get(name);
+  }
+
+  public MediaType getMediaType() {
+    String contentType = headers.get(HttpHeaders.CONTENT_TYPE);
+    return contentType == null ? null : MediaType.valueOf(contentType);
+  }
+
+  public String getEntity() {
+    return entity;
+  }
+
+  public String getEtag() {
+    return headers.get(HttpHeaders.ETAG);
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util;
+
+import io.hops.util.exceptions.HTTPSClientInitializationException;
+import io.hops.util.exceptions.JWTNotFoundException;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cache for read-only GET requests to the Hopsworks REST API.
+ * <p>
+ * Successful responses are kept in a bounded LRU map keyed by method, path and query. Within the time to live an
+ * entry is returned without a request, afterwards it is revalidated with If-None-Match if the server sent an ETag.
+ * Concurrent identical requests are coalesced, so that only one of them goes over the network and the others wait for
+ * its result. The size and time to live are set with the hopsutil.rest.cache.size and hopsutil.rest.cache.ttl.ms
+ * system properties.
+ */
+final class RestResponseCache {
+
+  private static final Logger LOG = Logger.getLogger(RestResponseCache.class.getName());
+
+  private static final int MAX_ENTRIES = Integer.getInteger(Constants.HOPSUTIL_REST_CACHE_SIZE, 256);
+  private static final long TTL_MS = Long.getLong(Constants.HOPSUTIL_REST_CACHE_TTL_MS, 60000L);
+
+  private static final Map<String, Entry> ENTRIES = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+      return size() > MAX_ENTRIES;
+    }
+  };
+  private static final Map<String, CompletableFuture<RestResponse>> IN_FLIGHT = new ConcurrentHashMap<>();
+  private static final AtomicLong HITS = new AtomicLong();
+  private static final AtomicLong MISSES = new AtomicLong();
+
+  private RestResponseCache() {
+  }
+
+  /**
+   * GET the resource, from the cache if possible.
+   *
+   * @param path resource path relative to the Hopsworks REST API.
+   * @param queryParams query parameters, may be null.
+   * @return response
+   * @throws HTTPSClientInitializationException HTTPSClientInitializationException
+   * @throws JWTNotFoundException JWTNotFoundException
+   */
+  static RestResponse get(String path, Map<String, Object> queryParams) throws HTTPSClientInitializationException,
+    JWTNotFoundException {
+    String key = key(path, queryParams);
+    Entry entry;
+    synchronized (ENTRIES) {
+      entry = ENTRIES.get(key);
+    }
+    if (entry != null && System.currentTimeMillis() - entry.validatedAt < TTL_MS) {
+      HITS.incrementAndGet();
+      return entry.response;
+    }
+
+    CompletableFuture<RestResponse> request = new CompletableFuture<>();
+    CompletableFuture<RestResponse> inFlight = IN_FLIGHT.putIfAbsent(key, request);
+    if (inFlight != null) {
+      HITS.incrementAndGet();
+      return await(inFlight);
+    }
+    try {
+      RestResponse response = fetch(key, path, queryParams, entry);
+      request.complete(response);
+      return response;
+    } catch (HTTPSClientInitializationException | JWTNotFoundException | RuntimeException e) {
+      request.completeExceptionally(e);
+      throw e;
+    } finally {
+      IN_FLIGHT.remove(key, request);
+    }
+  }
+
+  private static RestResponse fetch(String key, String path, Map<String, Object> queryParams, Entry entry)
+    throws HTTPSClientInitializationException, JWTNotFoundException {
+    MISSES.incrementAndGet();
+    Map<String, String> headers = new HashMap<>();
+    if (entry != null && entry.response.getEtag() != null) {
+      headers.put(HttpHeaders.IF_NONE_MATCH, entry.response.getEtag());
+    }
+    RestResponse response = Hops.execute(HttpMethod.GET, path, queryParams, headers, null);
+    if (response.getStatus() == Response.Status.NOT_MODIFIED.getStatusCode() && entry != null) {
+      LOG.log(Level.FINE, "Revalidated {0}", key);
+      entry.validatedAt = System.currentTimeMillis();
+      return entry.response;
+    }
+    if (response.getStatus() == Response.Status.OK.getStatusCode()) {
+      synchronized (ENTRIES) {
+        ENTRIES.put(key, new Entry(response));
+      }
+    }
+    return response;
+  }
+
+  private static RestResponse await(CompletableFuture<RestResponse> inFlight)
+    throws HTTPSClientInitializationException, JWTNotFoundException {
+    try {
+      return inFlight.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for response", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof HTTPSClientInitializationException) {
+        throw (HTTPSClientInitializationException) cause;
+      } else if (cause instanceof JWTNotFoundException) {
+        throw (JWTNotFoundException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  private static String key(String path, Map<String, Object> queryParams) {
+    StringBuilder key = new StringBuilder(HttpMethod.GET).append(' ').append(path);
+    if (queryParams != null && !queryParams.isEmpty()) {
+      char separator = '?';
+      for (Map.Entry<String, Object> param : new TreeMap<>(queryParams).entrySet()) {
+        key.append(separator).append(param.getKey()).append('=').append(param.getValue());
+        separator = '&';
+      }
+    }
+    return key.toString();
+  }
+
+  /**
+   * Drop all cached responses.
+   */
+  static void invalidateAll() {
+    synchronized (ENTRIES) {
+      ENTRIES.clear();
+    }
+  }
+
+  static long getHits() {
+    return HITS.get();
+  }
+
+  static long getMisses() {
+    return MISSES.get();
+  }
+
+  private static class Entry {
+    private final RestResponse response;
+    private volatile long validatedAt;
+
+    Entry(RestResponse response) {
+      this.response = response;
+      this.validatedAt = System.currentTimeMillis();
+    }
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util;
+
+import io.hops.util.exceptions.SecretException;
+
+/**
+ * Outcome of a single secret of a batch operation such as {@link Hops#createSecrets(java.util.Map)}.
+ */
+public final class SecretResult {
+
+  private final String name;
+  private final SecretException error;
+
+  SecretResult(String name, SecretException error) {
+    this.name = name;
+    this.error = error;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public boolean isSuccess() {
+    return error == null;
+  }
+
+  /**
+   * @return the reason the operation failed for this secret, or null if it succeeded.
+   */
+  public SecretException getError() {
+    return error;
+  }
+
+  @Override
+  public String toString() {
+    return "SecretResult{name='" + name + "', success=" + isSuccess()
+      + (error == null ? "" : ", error='" + error.getMessage() + "'") + "}";
+  }
+}
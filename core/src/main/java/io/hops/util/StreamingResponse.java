@@ -0,0 +1,62 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Response of the Hopsworks REST API whose body is read as a stream, e.g. a file download. Unlike a
+ * {@link RestResponse} it holds on to the connection until it is closed.
+ */
+public final class StreamingResponse implements Closeable {
+
+  private final int status;
+  private final Map<String, String> headers;
+  private final InputStream body;
+
+  /**
+   * Create a response.
+   *
+   * @param status HTTP status code
+   * @param headers response headers, the first value of each header is enough.
+   * @param body response body, closing it releases the connection.
+   */
+  public StreamingResponse(int status, Map<String, String> headers, InputStream body) {
+    this.status = status;
+    this.headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    this.headers.putAll(headers);
+    this.body = body;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+
+  public String getHeader(String name) {
+    return headers.get(name);
+  }
+
+  public InputStream getBody() {
+    return body;
+  }
+
+  @Override
+  public void close() throws IOException {
+    body.close();
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util.cloud;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-process registry of the temporary credentials obtained through {@link io.hops.util.CredentialsProvider}, for
+ * clients that need the current credentials of a role. AWS SDK clients and S3A read it through
+ * {@link RegistryCredentialsProvider}.
+ * <p>
+ * Readers never block: the registry is an immutable snapshot that is replaced atomically when credentials are
+ * refreshed, so a reader always sees the key, secret and token of the same session.
+ */
+public final class CredentialRegistry {
+
+  private static final AtomicReference<Snapshot> SNAPSHOT =
+    new AtomicReference<>(new Snapshot(null, Collections.emptyMap()));
+
+  private CredentialRegistry() {
+  }
+
+  /**
+   * Get the credentials of the role assumed last with {@link io.hops.util.CredentialsProvider#assumeRole}.
+   *
+   * @return credentials, or null if no role was assumed.
+   */
+  public static Credentials get() {
+    return copy(SNAPSHOT.get().current);
+  }
+
+  /**
+   * Get the credentials of a role.
+   *
+   * @param role role ARN, null or empty for the default role of the project.
+   * @return credentials, or null if the role was not assumed.
+   */
+  public static Credentials get(String role) {
+    return copy(SNAPSHOT.get().byRole.get(key(role)));
+  }
+
+  /**
+   * Register the credentials of a role.
+   *
+   * @param role role ARN, null or empty for the default role of the project.
+   * @param credentials credentials
+   * @param current whether these become the credentials returned by {@link #get()}.
+   */
+  public static void put(String role, Credentials credentials, boolean current) {
+    Credentials stored = copy(credentials);
+    SNAPSHOT.updateAndGet(snapshot -> {
+      Map<String, Credentials> byRole = new HashMap<>(snapshot.byRole);
+      byRole.put(key(role), stored);
+      return new Snapshot(current ? stored : snapshot.current, Collections.unmodifiableMap(byRole));
+    });
+  }
+
+  /**
+   * Remove all credentials.
+   */
+  public static void clear() {
+    SNAPSHOT.set(new Snapshot(null, Collections.emptyMap()));
+  }
+
+  private static String key(String role) {
+    return role == null ? "" : role;
+  }
+
+  //Credentials are mutable, the registry never hands out the instances it holds
+  private static Credentials copy(Credentials credentials) {
+    return credentials == null ? null
+      : new Credentials(credentials.getAccessKeyId(), credentials.getSecretAccessKey(), credentials.getSessionToken());
+  }
+
+  private static final class Snapshot {
+    private final Credentials current;
+    private final Map<String, Credentials> byRole;
+
+    private Snapshot(Credentials current, Map<String, Credentials> byRole) {
+      this.current = current;
+      this.byRole = byRole;
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util.cloud;
+
+import com.amazonaws.SdkClientException;
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.auth.BasicSessionCredentials;
+import io.hops.util.Constants;
+import org.apache.hadoop.conf.Configuration;
+
+import java.net.URI;
+
+/**
+ * AWS SDK credentials provider returning the credentials of a role from the {@link CredentialRegistry}, so that SDK
+ * clients and S3A pick up credentials refreshed by {@link io.hops.util.CredentialsProvider} without copying them.
+ * <p>
+ * S3A creates it from the configuration, where fs.s3a.hops.role selects the role, also per bucket as
+ * fs.s3a.bucket.&lt;bucket&gt;.hops.role. Without a role it returns the credentials of the role assumed last.
+ * <pre>
+ * fs.s3a.aws.credentials.provider=io.hops.util.cloud.RegistryCredentialsProvider,
+ *   org.apache.hadoop.fs.s3a.TemporaryAWSCredentialsProvider
+ * </pre>
+ * The registry only holds the credentials assumed in the same JVM. Listing TemporaryAWSCredentialsProvider after it
+ * lets other JVMs, such as Spark executors, fall back to the credentials set in the Hadoop configuration.
+ */
+public class RegistryCredentialsProvider implements AWSCredentialsProvider {
+
+  private final String role;
+
+  /**
+   * Provider of the credentials of the role assumed last.
+   */
+  public RegistryCredentialsProvider() {
+    this((String) null);
+  }
+
+  /**
+   * @param role role ARN, empty for the default role of the project, or null for the role assumed last.
+   */
+  public RegistryCredentialsProvider(String role) {
+    this.role = role;
+  }
+
+  /**
+   * Constructor used by S3A.
+   *
+   * @param uri URI of the file system
+   * @param conf configuration of the file system, with the per-bucket options already applied.
+   */
+  public RegistryCredentialsProvider(URI uri, Configuration conf) {
+    this(conf.get(Constants.S3_REGISTRY_ROLE));
+  }
+
+  @Override
+  public AWSCredentials getCredentials() {
+    Credentials credentials = role == null ? CredentialRegistry.get() : CredentialRegistry.get(role);
+    if (credentials == null) {
+      throw new SdkClientException("No credentials of " + (role == null ? "any role" : "role " + role)
+        + " in the registry, they are registered when the role is assumed with CredentialsProvider");
+    }
+    if (credentials.getSessionToken() == null) {
+      return new BasicAWSCredentials(credentials.getAccessKeyId(), credentials.getSecretAccessKey());
+    }
+    return new BasicSessionCredentials(credentials.getAccessKeyId(), credentials.getSecretAccessKey(),
+      credentials.getSessionToken());
+  }
+
+  @Override
+  public void refresh() {
+    //The registry always holds the latest credentials, CredentialsProvider refreshes them when they are requested
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + (role == null ? "" : "[" + role + "]");
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * {@link HttpTransport} on top of the JDK HttpClient, negotiating HTTP/2 so that concurrent requests share one
+ * multiplexed connection. Only available on Java 11 and newer, where it is loaded from the multi-release jar.
+ */
+class JdkHttpTransport implements HttpTransport {
+
+  private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(30);
+
+  private final HttpClient client;
+
+  JdkHttpTransport(SSLContext sslContext) {
+    this.client = HttpClient.newBuilder()
+      .version(HttpClient.Version.HTTP_2)
+      .sslContext(sslContext)
+      .connectTimeout(CONNECT_TIMEOUT)
+      .build();
+  }
+
+  @Override
+  public RestResponse execute(String method, URI uri, Map<String, String> headers, String body) throws IOException {
+    HttpRequest.Builder builder = HttpRequest.newBuilder(uri);
+    for (Map.Entry<String, String> header : headers.entrySet()) {
+      builder.header(header.getKey(), header.getValue());
+    }
+    HttpRequest.BodyPublisher publisher = HttpRequest.BodyPublishers.noBody();
+    if (body != null) {
+      builder.header("Content-Type", "application/json");
+      publisher = HttpCompression.GZIP.equals(headers.get(HttpCompression.CONTENT_ENCODING_HEADER)) ?
+        HttpRequest.BodyPublishers.ofByteArray(HttpCompression.gzip(body)) :
+        HttpRequest.BodyPublishers.ofString(body);
+    }
+    builder.method(method, publisher);
+    try {
+      //HttpClient does not decode compressed responses by itself
+      HttpResponse<byte[]> response = client.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+      return new RestResponse(response.statusCode(), firstValues(response), HttpCompression.decode(response.body(),
+        response.headers().firstValue(HttpCompression.CONTENT_ENCODING_HEADER).orElse(null)));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for " + uri, e);
+    }
+  }
+
+  @Override
+  public StreamingResponse stream(String method, URI uri, Map<String, String> headers, String contentType,
+    Supplier<InputStream> body) throws IOException {
+    HttpRequest.Builder builder = HttpRequest.newBuilder(uri);
+    for (Map.Entry<String, String> header : headers.entrySet()) {
+      builder.header(header.getKey(), header.getValue());
+    }
+    if (body == null) {
+      builder.method(method, HttpRequest.BodyPublishers.noBody());
+    } else {
+      builder.header("Content-Type", contentType).method(method, HttpRequest.BodyPublishers.ofInputStream(body));
+    }
+    try {
+      HttpResponse<InputStream> response = client.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+      return new StreamingResponse(response.statusCode(), firstValues(response), response.body());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for " + uri, e);
+    }
+  }
+
+  private static Map<String, String> firstValues(HttpResponse<?> response) {
+    Map<String, String> headers = new HashMap<>();
+    response.headers().map().forEach((name, values) -> {
+      if (!values.isEmpty()) {
+        headers.put(name, values.get(0));
+      }
+    });
+    return headers;
+  }
+
+  @Override
+  public void close() {
+    //HttpClient has no close before Java 21, connections are released when it is garbage collected
+  }
+}
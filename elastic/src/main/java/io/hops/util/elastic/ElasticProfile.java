@@ -0,0 +1,88 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util.elastic;
+
+import java.util.Map;
+
+/**
+ * elasticsearch-hadoop tuning profiles applied on top of the Hops connection settings returned by
+ * {@link ElasticUtils#getElasticConfiguration(String, ElasticProfile)}.
+ */
+public enum ElasticProfile {
+
+  /**
+   * elasticsearch-hadoop defaults.
+   */
+  DEFAULT,
+  /**
+   * Large bulk requests without refreshes, patient retries, for indexing jobs such as feature logging.
+   */
+  BULK_INGEST,
+  /**
+   * Small bulk requests that are refreshed right away, so written documents are searchable when the task ends.
+   */
+  LOW_LATENCY,
+  /**
+   * Large scroll pages and more input partitions for jobs that mostly read.
+   */
+  READ_HEAVY;
+
+  private static final long MB = 1024 * 1024;
+  //Upper bound of the bulk bytes all executors have in flight at once in BULK_INGEST
+  private static final long BULK_BUDGET_BYTES = 256 * MB;
+  private static final long BULK_MIN_BYTES = MB;
+  private static final long BULK_MAX_BYTES = 16 * MB;
+
+  /**
+   * Apply the settings of this profile. Settings already present are not overridden.
+   *
+   * @param configs elasticsearch-hadoop configuration
+   * @param executors number of executors writing concurrently, used to size bulk requests so that the cluster is not
+   *                  flooded by large jobs. 0 or less if unknown.
+   * @return the same configuration
+   */
+  public Map<String, String> apply(Map<String, String> configs, int executors) {
+    switch (this) {
+      case BULK_INGEST:
+        long bytes = executors > 0
+          ? Math.max(BULK_MIN_BYTES, Math.min(BULK_MAX_BYTES, BULK_BUDGET_BYTES / executors)) : 8 * MB;
+        configs.putIfAbsent("es.batch.size.bytes", bytes / MB + "mb");
+        configs.putIfAbsent("es.batch.size.entries", "10000");
+        configs.putIfAbsent("es.batch.write.refresh", "false");
+        configs.putIfAbsent("es.batch.write.retry.count", "6");
+        configs.putIfAbsent("es.batch.write.retry.wait", "30s");
+        configs.putIfAbsent("es.http.timeout", "5m");
+        configs.putIfAbsent("es.http.retries", "5");
+        break;
+      case LOW_LATENCY:
+        configs.putIfAbsent("es.batch.size.bytes", "512kb");
+        configs.putIfAbsent("es.batch.size.entries", "500");
+        configs.putIfAbsent("es.batch.write.refresh", "true");
+        configs.putIfAbsent("es.batch.write.retry.count", "2");
+        configs.putIfAbsent("es.batch.write.retry.wait", "1s");
+        configs.putIfAbsent("es.http.timeout", "30s");
+        break;
+      case READ_HEAVY:
+        configs.putIfAbsent("es.scroll.size", "5000");
+        configs.putIfAbsent("es.scroll.keepalive", "10m");
+        configs.putIfAbsent("es.input.max.docs.per.partition", "250000");
+        configs.putIfAbsent("es.http.timeout", "5m");
+        configs.putIfAbsent("es.http.retries", "5");
+        break;
+      default:
+        break;
+    }
+    return configs;
+  }
+}
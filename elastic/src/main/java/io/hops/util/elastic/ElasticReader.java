@@ -0,0 +1,331 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util.elastic;
+
+import io.hops.util.Hops;
+import io.hops.util.exceptions.ElasticAuthorizationTokenException;
+import io.hops.util.exceptions.HTTPSClientInitializationException;
+import io.hops.util.exceptions.JWTNotFoundException;
+import org.glassfish.jersey.message.GZipEncoder;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads all documents of a project index matching a query, one page at a time, so that large indices can be scanned
+ * in constant memory outside of Spark. The next page is requested while the current one is consumed.
+ * <p>
+ * Without a sort the index is scanned with the scroll API in index order. With a sort, pages are requested with
+ * search_after, in which case the sort must end with a field that is unique per document.
+ *
+ * <pre>
+ * try (ElasticReader reader = ElasticReader.builder().setIndex("logs").setPageSize(5000).build()) {
+ *   reader.stream().forEach(hit -&gt; process(hit.getJSONObject("_source")));
+ * }
+ * </pre>
+ */
+public class ElasticReader implements Iterator<JSONObject>, Closeable {
+
+  private static final Logger LOG = Logger.getLogger(ElasticReader.class.getName());
+  //Upper bound for the page request in flight when the reader is closed
+  private static final long CLOSE_TIMEOUT_SECONDS = 60;
+
+  private final Client client;
+  private final String baseUrl;
+  private final String index;
+  private final JSONObject query;
+  private final JSONArray sort;
+  private final int pageSize;
+  private final String scrollKeepAlive;
+  private final ExecutorService prefetcher;
+
+  private final Deque<JSONObject> page = new ArrayDeque<>();
+  private CompletableFuture<JSONArray> nextPage;
+  private volatile String scrollId;
+  private JSONArray searchAfter;
+  private boolean exhausted;
+  private boolean closed;
+
+  private ElasticReader(Builder builder) throws HTTPSClientInitializationException {
+    this.client = createClient();
+    String endpoint = Hops.getElasticEndPoint();
+    this.baseUrl = endpoint.contains("://") ? endpoint : "https://" + endpoint;
+    this.index = Hops.getElasticIndex(builder.index);
+    this.query = builder.query == null ? new JSONObject().put("match_all", new JSONObject()) : builder.query;
+    this.sort = builder.sort;
+    this.pageSize = builder.pageSize;
+    this.scrollKeepAlive = builder.scrollKeepAlive;
+    this.prefetcher = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "hops-elastic-reader");
+      thread.setDaemon(true);
+      return thread;
+    });
+    nextPage = CompletableFuture.supplyAsync(this::fetchPage, prefetcher);
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Client authenticating with the keystore of the job, as done by the Spark connector.
+   */
+  private static Client createClient() throws HTTPSClientInitializationException {
+    try {
+      KeyStore keystore = KeyStore.getInstance(KeyStore.getDefaultType());
+      try (FileInputStream keystoreIS = new FileInputStream(Hops.getKeyStore())) {
+        keystore.load(keystoreIS, Hops.getKeystorePwd().toCharArray());
+      }
+      KeyStore truststore = KeyStore.getInstance(KeyStore.getDefaultType());
+      try (FileInputStream truststoreIS = new FileInputStream(Hops.getTrustStore())) {
+        truststore.load(truststoreIS, Hops.getTruststorePwd().toCharArray());
+      }
+      return ClientBuilder.newBuilder().keyStore(keystore, Hops.getKeystorePwd()).trustStore(truststore)
+        .register(GZipEncoder.class).build();
+    } catch (IOException | GeneralSecurityException e) {
+      throw new HTTPSClientInitializationException("Could not load the keystore of the job", e);
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (closed) {
+      return false;
+    }
+    while (page.isEmpty() && !exhausted) {
+      JSONArray hits;
+      try {
+        hits = nextPage.join();
+      } catch (CompletionException e) {
+        close();
+        throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+      }
+      if (hits.length() < pageSize) {
+        exhausted = true;
+      } else {
+        //Request the following page while this one is consumed
+        nextPage = CompletableFuture.supplyAsync(this::fetchPage, prefetcher);
+      }
+      for (int i = 0; i < hits.length(); i++) {
+        page.add(hits.getJSONObject(i));
+      }
+    }
+    if (page.isEmpty()) {
+      close();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * @return the next hit, with the document in its _source field.
+   */
+  @Override
+  public JSONObject next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return page.poll();
+  }
+
+  /**
+   * @return the remaining hits as a sequential stream, which closes the reader when it is closed.
+   */
+  public Stream<JSONObject> stream() {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL),
+      false).onClose(this::close);
+  }
+
+  private JSONArray fetchPage() {
+    JSONObject response;
+    if (sort == null) {
+      if (scrollId == null) {
+        JSONObject body = new JSONObject().put("size", pageSize).put("query", query)
+          .put("sort", new JSONArray().put("_doc"));
+        response = post("/" + index + "/_search?scroll=" + scrollKeepAlive, body);
+      } else {
+        response = post("/_search/scroll", new JSONObject().put("scroll", scrollKeepAlive).put("scroll_id", scrollId));
+      }
+      scrollId = response.optString("_scroll_id", null);
+    } else {
+      JSONObject body = new JSONObject().put("size", pageSize).put("query", query).put("sort", sort);
+      if (searchAfter != null) {
+        body.put("search_after", searchAfter);
+      }
+      response = post("/" + index + "/_search", body);
+    }
+    JSONArray hits = response.getJSONObject("hits").getJSONArray("hits");
+    if (sort != null && hits.length() > 0) {
+      searchAfter = hits.getJSONObject(hits.length() - 1).getJSONArray("sort");
+    }
+    return hits;
+  }
+
+  private JSONObject post(String path, JSONObject body) {
+    Response response = request(path).post(Entity.json(body.toString()));
+    try {
+      String entity = response.readEntity(String.class);
+      if (response.getStatus() != Response.Status.OK.getStatusCode()) {
+        throw new UncheckedIOException(new IOException("Search on " + index + " failed with status "
+          + response.getStatus() + ": " + entity));
+      }
+      return new JSONObject(entity);
+    } finally {
+      response.close();
+    }
+  }
+
+  private Invocation.Builder request(String path) {
+    try {
+      //The token is cached by Hops and renewed when it expires during long scans
+      return client.target(baseUrl + path).request(MediaType.APPLICATION_JSON)
+        .header(HttpHeaders.AUTHORIZATION, Hops.getElasticAuthorizationToken());
+    } catch (JWTNotFoundException | ElasticAuthorizationTokenException e) {
+      throw new UncheckedIOException(new IOException("Could not authenticate to Elastic", e));
+    }
+  }
+
+  /**
+   * Release the scroll context, if any, and the connections of the reader. A page request in flight is waited for,
+   * as it may create the scroll context and uses the connections.
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    //A request that has not started yet is not sent, one in flight completes before the scroll is cleared
+    nextPage.cancel(false);
+    prefetcher.shutdown();
+    try {
+      if (!prefetcher.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        LOG.log(Level.WARNING, "Page request on {0} did not complete, closing the reader anyway", index);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (scrollId != null) {
+      try {
+        request("/_search/scroll/" + scrollId).delete().close();
+      } catch (RuntimeException e) {
+        LOG.log(Level.FINE, "Could not clear scroll of " + index, e);
+      }
+    }
+    client.close();
+  }
+
+  /**
+   * Builder of {@link ElasticReader}.
+   */
+  public static class Builder {
+
+    private String index;
+    private JSONObject query;
+    private JSONArray sort;
+    private int pageSize = 1000;
+    private String scrollKeepAlive = "5m";
+
+    /**
+     * @param index index name without the project prefix, as with {@link Hops#getElasticIndex(String)}.
+     * @return builder
+     */
+    public Builder setIndex(String index) {
+      this.index = index;
+      return this;
+    }
+
+    /**
+     * @param query the query clause of the search, all documents by default.
+     * @return builder
+     */
+    public Builder setQuery(JSONObject query) {
+      this.query = query;
+      return this;
+    }
+
+    /**
+     * Page with search_after instead of scroll. The last sort field must be unique per document.
+     *
+     * @param sort sort clause of the search
+     * @return builder
+     */
+    public Builder setSort(JSONArray sort) {
+      this.sort = sort;
+      return this;
+    }
+
+    /**
+     * @param pageSize hits per request, 1000 by default.
+     * @return builder
+     */
+    public Builder setPageSize(int pageSize) {
+      this.pageSize = pageSize;
+      return this;
+    }
+
+    /**
+     * @param scrollKeepAlive how long the scroll context is kept between pages, 5m by default.
+     * @return builder
+     */
+    public Builder setScrollKeepAlive(String scrollKeepAlive) {
+      this.scrollKeepAlive = scrollKeepAlive;
+      return this;
+    }
+
+    /**
+     * Create the reader and request the first page.
+     *
+     * @return reader, which must be closed unless it is read to the end.
+     * @throws HTTPSClientInitializationException HTTPSClientInitializationException
+     */
+    public ElasticReader build() throws HTTPSClientInitializationException {
+      if (index == null) {
+        throw new IllegalArgumentException("index is not set");
+      }
+      if (pageSize <= 0) {
+        throw new IllegalArgumentException("pageSize must be positive");
+      }
+      return new ElasticReader(this);
+    }
+  }
+}
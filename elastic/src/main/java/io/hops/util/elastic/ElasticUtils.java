@@ -0,0 +1,57 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util.elastic;
+
+import io.hops.util.Hops;
+import io.hops.util.exceptions.ElasticAuthorizationTokenException;
+import io.hops.util.exceptions.JWTNotFoundException;
+
+import java.util.Map;
+
+/**
+ * Elasticsearch connector configuration tuned with an {@link ElasticProfile}.
+ */
+public class ElasticUtils {
+
+  private ElasticUtils() {
+  }
+
+  /**
+   * Get Elasticsearch configuration to use with spark connector, tuned with a profile.
+   * @param index index
+   * @param profile tuning profile
+   * @return elasticsearch configurations
+   * @throws ElasticAuthorizationTokenException ElasticAuthorizationTokenException
+   * @throws JWTNotFoundException JWTNotFoundException
+   */
+  public static Map<String, String> getElasticConfiguration(String index, ElasticProfile profile)
+      throws ElasticAuthorizationTokenException, JWTNotFoundException {
+    return getElasticConfiguration(index, profile, 0);
+  }
+
+  /**
+   * Get Elasticsearch configuration to use with spark connector, tuned with a profile and scaled to the number of
+   * executors writing to the index.
+   * @param index index
+   * @param profile tuning profile
+   * @param executors number of executors of the job, 0 if unknown.
+   * @return elasticsearch configurations
+   * @throws ElasticAuthorizationTokenException ElasticAuthorizationTokenException
+   * @throws JWTNotFoundException JWTNotFoundException
+   */
+  public static Map<String, String> getElasticConfiguration(String index, ElasticProfile profile, int executors)
+      throws ElasticAuthorizationTokenException, JWTNotFoundException {
+    return profile.apply(Hops.getElasticConfiguration(index), executors);
+  }
+}
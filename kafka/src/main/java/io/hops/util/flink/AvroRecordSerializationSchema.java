@@ -0,0 +1,56 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util.flink;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.flink.api.common.serialization.SerializationSchema;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Serializes GenericRecords to Avro binary Kafka values, reusing the writer, encoder and output buffer of the task.
+ */
+public class AvroRecordSerializationSchema implements SerializationSchema<GenericRecord> {
+
+  private final String schemaJson;
+  private transient GenericDatumWriter<GenericRecord> writer;
+  private transient BinaryEncoder encoder;
+  private transient ByteArrayOutputStream out;
+
+  public AvroRecordSerializationSchema(Schema schema) {
+    this.schemaJson = schema.toString();
+  }
+
+  @Override
+  public byte[] serialize(GenericRecord element) {
+    if (writer == null) {
+      writer = new GenericDatumWriter<>(new Schema.Parser().parse(schemaJson));
+      out = new ByteArrayOutputStream(1024);
+    }
+    out.reset();
+    encoder = EncoderFactory.get().binaryEncoder(out, encoder);
+    try {
+      writer.write(element, encoder);
+      encoder.flush();
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not serialize record", e);
+    }
+    return out.toByteArray();
+  }
+}
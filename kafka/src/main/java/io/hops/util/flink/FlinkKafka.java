@@ -0,0 +1,167 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util.flink;
+
+import io.hops.util.Constants;
+import io.hops.util.Hops;
+import io.hops.util.exceptions.JWTNotFoundException;
+import io.hops.util.exceptions.SchemaNotFoundException;
+import io.hops.util.kafka.KafkaProfile;
+import io.hops.util.kafka.KafkaUtils;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.flink.formats.avro.AvroDeserializationSchema;
+import org.apache.flink.formats.avro.typeutils.GenericRecordAvroTypeInfo;
+import org.apache.flink.streaming.connectors.kafka.FlinkKafkaConsumer;
+import org.apache.flink.streaming.connectors.kafka.FlinkKafkaProducer;
+import org.apache.kafka.clients.CommonClientConfigs;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+
+import java.util.Properties;
+
+/**
+ * Factory for Flink Kafka sources and sinks of Hopsworks topics. Clients are configured with the Hops broker list and
+ * SSL material, values are (de)serialized with the Avro schema of the topic as registered in Hopsworks.
+ * <p>
+ * Hops must be set up with {@link Hops#setup(java.util.Map)} before. Records are typed with
+ * {@link GenericRecordAvroTypeInfo}, so that Flink serializes them with Avro rather than Kryo between operators.
+ * Operators producing GenericRecords must declare their type with {@link #getTypeInfo(String)}. flink-avro is not
+ * part of the Flink distribution and must be packaged with the job.
+ *
+ * <pre>
+ * Hops.setup(ParameterTool.fromArgs(args).toMap());
+ * DataStream&lt;GenericRecord&gt; stream = env.addSource(FlinkKafka.getConsumer("events", KafkaProfile.THROUGHPUT));
+ * stream.map(record -&gt; enrich(record)).returns(FlinkKafka.getTypeInfo("enriched"))
+ *   .addSink(FlinkKafka.getProducer("enriched", KafkaProfile.THROUGHPUT));
+ * </pre>
+ */
+public class FlinkKafka {
+
+  private FlinkKafka() {
+  }
+
+  /**
+   * Get a consumer for the topic using the default profile.
+   *
+   * @param topic Kafka topic name.
+   * @return Flink Kafka consumer
+   * @throws JWTNotFoundException JWTNotFoundException
+   * @throws SchemaNotFoundException SchemaNotFoundException
+   */
+  public static FlinkKafkaConsumer<GenericRecord> getConsumer(String topic) throws JWTNotFoundException,
+    SchemaNotFoundException {
+    return getConsumer(topic, KafkaProfile.DEFAULT, null);
+  }
+
+  public static FlinkKafkaConsumer<GenericRecord> getConsumer(String topic, KafkaProfile profile)
+    throws JWTNotFoundException, SchemaNotFoundException {
+    return getConsumer(topic, profile, null);
+  }
+
+  /**
+   * Get a consumer for the topic.
+   *
+   * @param topic Kafka topic name.
+   * @param profile tuning profile.
+   * @param overrides properties taking precedence over the Hops and profile ones, may be null.
+   * @return Flink Kafka consumer
+   * @throws JWTNotFoundException JWTNotFoundException
+   * @throws SchemaNotFoundException SchemaNotFoundException
+   */
+  public static FlinkKafkaConsumer<GenericRecord> getConsumer(String topic, KafkaProfile profile,
+    Properties overrides) throws JWTNotFoundException, SchemaNotFoundException {
+    return new FlinkKafkaConsumer<>(topic, AvroDeserializationSchema.forGeneric(KafkaUtils.getCachedSchema(topic)),
+      getConsumerProperties(profile, overrides));
+  }
+
+  /**
+   * Get the Flink type of GenericRecords of the topic, serialized with Avro between operators.
+   *
+   * @param topic Kafka topic name.
+   * @return type information
+   * @throws JWTNotFoundException JWTNotFoundException
+   * @throws SchemaNotFoundException SchemaNotFoundException
+   */
+  public static GenericRecordAvroTypeInfo getTypeInfo(String topic) throws JWTNotFoundException,
+    SchemaNotFoundException {
+    return new GenericRecordAvroTypeInfo(KafkaUtils.getCachedSchema(topic));
+  }
+
+  public static FlinkKafkaProducer<GenericRecord> getProducer(String topic) throws JWTNotFoundException,
+    SchemaNotFoundException {
+    return getProducer(topic, KafkaProfile.DEFAULT, null);
+  }
+
+  public static FlinkKafkaProducer<GenericRecord> getProducer(String topic, KafkaProfile profile)
+    throws JWTNotFoundException, SchemaNotFoundException {
+    return getProducer(topic, profile, null);
+  }
+
+  /**
+   * Get a producer for the topic.
+   *
+   * @param topic Kafka topic name.
+   * @param profile tuning profile.
+   * @param overrides properties taking precedence over the Hops and profile ones, may be null.
+   * @return Flink Kafka producer
+   * @throws JWTNotFoundException JWTNotFoundException
+   * @throws SchemaNotFoundException SchemaNotFoundException
+   */
+  public static FlinkKafkaProducer<GenericRecord> getProducer(String topic, KafkaProfile profile,
+    Properties overrides) throws JWTNotFoundException, SchemaNotFoundException {
+    return new FlinkKafkaProducer<>(topic, new AvroRecordSerializationSchema(KafkaUtils.getCachedSchema(topic)),
+      getProducerProperties(profile, overrides));
+  }
+
+  /**
+   * Consumer properties with the Hops brokers, SSL material and the first consumer group configured for the job.
+   *
+   * @param profile tuning profile.
+   * @param overrides properties taking precedence, may be null.
+   * @return consumer properties
+   */
+  public static Properties getConsumerProperties(KafkaProfile profile, Properties overrides) {
+    Properties properties = getProperties(overrides);
+    String groups = System.getProperty(Constants.KAFKA_CONSUMER_GROUPS);
+    if (groups != null && !groups.isEmpty()) {
+      properties.putIfAbsent(ConsumerConfig.GROUP_ID_CONFIG, groups.split(",")[0]);
+    } else if (Hops.getJobName() != null) {
+      properties.putIfAbsent(ConsumerConfig.GROUP_ID_CONFIG, Hops.getJobName());
+    }
+    return profile.applyConsumer(properties);
+  }
+
+  public static Properties getProducerProperties(KafkaProfile profile, Properties overrides) {
+    return profile.applyProducer(getProperties(overrides));
+  }
+
+  private static Properties getProperties(Properties overrides) {
+    Properties properties = new Properties();
+    if (overrides != null) {
+      properties.putAll(overrides);
+    }
+    String bootstrapServers = KafkaUtils.getBootstrapServers();
+    if (bootstrapServers != null) {
+      properties.putIfAbsent(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+    }
+    if (!properties.containsKey(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG)) {
+      throw new IllegalStateException("Kafka brokers are not set, provide " + CommonClientConfigs
+        .BOOTSTRAP_SERVERS_CONFIG + " in the overrides.");
+    }
+    Properties ssl = KafkaUtils.getKafkaSSLProperties();
+    for (String key : ssl.stringPropertyNames()) {
+      properties.putIfAbsent(key, ssl.getProperty(key));
+    }
+    return properties;
+  }
+}
@@ -0,0 +1,256 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util.kafka;
+
+import io.hops.util.Hops;
+import io.hops.util.exceptions.JWTNotFoundException;
+import io.hops.util.exceptions.SchemaNotFoundException;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.message.SchemaStore;
+
+import java.io.IOException;
+
+/**
+ * Index of Avro schemas by their 64-bit Rabin fingerprint (the parsing fingerprint of the Avro specification), for
+ * consumers of records in Avro single-object encoding or with a fingerprint header. A record can be decoded without
+ * knowing the topic it was read from, so one consumer can read topics or subjects with several schemas.
+ * <p>
+ * Lookups go to an open addressing table keyed by the primitive fingerprint and do not allocate. Schemas are added
+ * rarely, by replacing the table, so lookups never lock. The index can also be passed to Avro's
+ * {@link org.apache.avro.message.BinaryMessageDecoder} as a {@link SchemaStore}.
+ */
+public class AvroSchemaIndex implements SchemaStore {
+
+  /**
+   * Header of Avro single-object encoding, followed by the little-endian fingerprint of the writer schema.
+   */
+  private static final byte[] SINGLE_OBJECT_MAGIC = new byte[]{(byte) 0xC3, (byte) 0x01};
+  /**
+   * Length of the single-object header, magic and fingerprint.
+   */
+  public static final int SINGLE_OBJECT_HEADER_LENGTH = 10;
+
+  private volatile Table table = new Table(16);
+
+  /**
+   * Create an index of all schema versions of the given topics.
+   *
+   * @param topics Kafka topic names.
+   * @return schema index
+   * @throws JWTNotFoundException JWTNotFoundException
+   * @throws SchemaNotFoundException SchemaNotFoundException
+   */
+  public static AvroSchemaIndex forTopics(String... topics) throws JWTNotFoundException, SchemaNotFoundException {
+    AvroSchemaIndex index = new AvroSchemaIndex();
+    for (String topic : topics) {
+      index.addTopic(topic);
+    }
+    return index;
+  }
+
+  /**
+   * Add all schema versions of a topic.
+   *
+   * @param topic Kafka topic name.
+   * @throws JWTNotFoundException JWTNotFoundException
+   * @throws SchemaNotFoundException SchemaNotFoundException
+   */
+  public void addTopic(String topic) throws JWTNotFoundException, SchemaNotFoundException {
+    for (String schema : Hops.getSchemaVersions(topic)) {
+      register(new Schema.Parser().parse(schema));
+    }
+  }
+
+  /**
+   * Add a schema to the index.
+   *
+   * @param schema Avro schema
+   * @return the fingerprint of the schema
+   */
+  public synchronized long register(Schema schema) {
+    long fingerprint = SchemaNormalization.parsingFingerprint64(schema);
+    Table current = table;
+    if (current.get(fingerprint) == null) {
+      Table next = current.size + 1 > current.keys.length / 2 ? current.resize(current.keys.length * 2)
+        : current.copy();
+      next.put(fingerprint, new Entry(schema));
+      table = next;
+    }
+    return fingerprint;
+  }
+
+  /**
+   * Get a schema by fingerprint.
+   *
+   * @param fingerprint 64-bit parsing fingerprint
+   * @return the schema, or null if it is not in the index.
+   */
+  public Schema get(long fingerprint) {
+    Entry entry = table.get(fingerprint);
+    return entry == null ? null : entry.schema;
+  }
+
+  @Override
+  public Schema findByFingerprint(long fingerprint) {
+    return get(fingerprint);
+  }
+
+  /**
+   * @param message serialized record
+   * @return whether the message starts with the Avro single-object header.
+   */
+  public static boolean isSingleObjectEncoded(byte[] message) {
+    return message != null && message.length >= SINGLE_OBJECT_HEADER_LENGTH
+      && message[0] == SINGLE_OBJECT_MAGIC[0] && message[1] == SINGLE_OBJECT_MAGIC[1];
+  }
+
+  /**
+   * Read the writer schema fingerprint of a single-object encoded message.
+   *
+   * @param message serialized record
+   * @return fingerprint
+   */
+  public static long readFingerprint(byte[] message) {
+    if (!isSingleObjectEncoded(message)) {
+      throw new IllegalArgumentException("Message is not in Avro single-object encoding");
+    }
+    return readFingerprint(message, SINGLE_OBJECT_MAGIC.length);
+  }
+
+  /**
+   * Read a little-endian fingerprint, as carried in single-object encoding or a fingerprint header.
+   *
+   * @param bytes bytes holding the fingerprint
+   * @param offset offset of the fingerprint
+   * @return fingerprint
+   */
+  public static long readFingerprint(byte[] bytes, int offset) {
+    long fingerprint = 0;
+    for (int i = 7; i >= 0; i--) {
+      fingerprint = (fingerprint << 8) | (bytes[offset + i] & 0xFFL);
+    }
+    return fingerprint;
+  }
+
+  /**
+   * Decode a single-object encoded message with its writer schema.
+   *
+   * @param message serialized record
+   * @param reuse record to reuse, may be null.
+   * @return the record
+   * @throws IOException if the writer schema is unknown or the message cannot be decoded.
+   */
+  public GenericRecord decode(byte[] message, GenericRecord reuse) throws IOException {
+    return decode(readFingerprint(message), message, SINGLE_OBJECT_HEADER_LENGTH,
+      message.length - SINGLE_OBJECT_HEADER_LENGTH, reuse);
+  }
+
+  /**
+   * Decode an Avro binary record whose writer schema fingerprint is known, e.g. from a record header.
+   *
+   * @param fingerprint fingerprint of the writer schema
+   * @param bytes buffer holding the record
+   * @param offset offset of the record
+   * @param length length of the record
+   * @param reuse record to reuse, may be null.
+   * @return the record
+   * @throws IOException if the writer schema is unknown or the record cannot be decoded.
+   */
+  public GenericRecord decode(long fingerprint, byte[] bytes, int offset, int length, GenericRecord reuse)
+    throws IOException {
+    Entry entry = table.get(fingerprint);
+    if (entry == null) {
+      throw new IOException("Unknown schema fingerprint " + Long.toHexString(fingerprint));
+    }
+    BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(bytes, offset, length, entry.decoders.get());
+    entry.decoders.set(decoder);
+    return entry.reader.read(reuse, decoder);
+  }
+
+  private static final class Entry {
+    private final Schema schema;
+    private final GenericDatumReader<GenericRecord> reader;
+    private final ThreadLocal<BinaryDecoder> decoders = new ThreadLocal<>();
+
+    private Entry(Schema schema) {
+      this.schema = schema;
+      this.reader = new GenericDatumReader<>(schema);
+    }
+  }
+
+  /**
+   * Open addressing table with linear probing, keyed by fingerprint. Tables are never modified once published.
+   */
+  private static final class Table {
+    private final long[] keys;
+    private final Entry[] values;
+    private int size;
+
+    private Table(int capacity) {
+      keys = new long[capacity];
+      values = new Entry[capacity];
+    }
+
+    private Entry get(long fingerprint) {
+      int mask = keys.length - 1;
+      for (int i = slot(fingerprint, mask); values[i] != null; i = (i + 1) & mask) {
+        if (keys[i] == fingerprint) {
+          return values[i];
+        }
+      }
+      return null;
+    }
+
+    private void put(long fingerprint, Entry entry) {
+      int mask = keys.length - 1;
+      int i = slot(fingerprint, mask);
+      while (values[i] != null && keys[i] != fingerprint) {
+        i = (i + 1) & mask;
+      }
+      if (values[i] == null) {
+        size++;
+      }
+      keys[i] = fingerprint;
+      values[i] = entry;
+    }
+
+    private Table copy() {
+      Table copy = new Table(keys.length);
+      System.arraycopy(keys, 0, copy.keys, 0, keys.length);
+      System.arraycopy(values, 0, copy.values, 0, values.length);
+      copy.size = size;
+      return copy;
+    }
+
+    private Table resize(int capacity) {
+      Table resized = new Table(capacity);
+      for (int i = 0; i < keys.length; i++) {
+        if (values[i] != null) {
+          resized.put(keys[i], values[i]);
+        }
+      }
+      return resized;
+    }
+
+    private static int slot(long fingerprint, int mask) {
+      //Fingerprints are already well distributed, fold the high bits in for small tables
+      return (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+    }
+  }
+}
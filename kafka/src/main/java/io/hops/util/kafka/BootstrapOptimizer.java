@@ -0,0 +1,214 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util.kafka;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Orders the Kafka bootstrap brokers for a client.
+ * <p>
+ * Kafka clients bootstrap against the first reachable broker of the list, so when every client of a large job gets
+ * the same list, the first broker serves all metadata requests. The optimizer probes the brokers with a TCP connect,
+ * drops the unreachable ones and either orders them by connect time or shuffles them per client. Probe results are
+ * cached for a while, so that creating many clients does not probe the brokers every time.
+ */
+public class BootstrapOptimizer {
+
+  private static final Logger LOG = Logger.getLogger(BootstrapOptimizer.class.getName());
+
+  public static final int DEFAULT_CONNECT_TIMEOUT_MS = 2000;
+  public static final long DEFAULT_PROBE_TTL_MS = 5 * 60 * 1000L;
+
+  /**
+   * How the reachable brokers are ordered.
+   */
+  public enum Strategy {
+    /**
+     * Keep the order of the list.
+     */
+    NONE,
+    /**
+     * Lowest connect time first.
+     */
+    LATENCY,
+    /**
+     * Random order per client, spreading bootstrap load over all brokers.
+     */
+    RANDOM;
+
+    /**
+     * Parse a strategy name, falling back to NONE for an empty or unknown name.
+     *
+     * @param strategy strategy name, case insensitive.
+     * @return strategy
+     */
+    public static Strategy fromString(String strategy) {
+      if (strategy == null || strategy.isEmpty()) {
+        return NONE;
+      }
+      try {
+        return valueOf(strategy.trim().toUpperCase(Locale.ENGLISH));
+      } catch (IllegalArgumentException e) {
+        LOG.log(Level.WARNING, "Unknown bootstrap strategy {0}, keeping the configured broker order", strategy);
+        return NONE;
+      }
+    }
+  }
+
+  private static final Map<List<String>, Probes> PROBES = new ConcurrentHashMap<>();
+
+  private BootstrapOptimizer() {
+  }
+
+  /**
+   * Order the brokers with the given strategy.
+   *
+   * @param brokers broker endpoints, host:port optionally prefixed with a listener name, e.g. INTERNAL://host:port
+   * @param strategy ordering strategy
+   * @return comma separated bootstrap servers
+   */
+  public static String getBootstrapServers(List<String> brokers, Strategy strategy) {
+    if (brokers == null || brokers.isEmpty() || strategy == Strategy.NONE) {
+      return brokers == null ? null : String.join(",", brokers);
+    }
+    List<Probe> reachable = new ArrayList<>();
+    for (Probe probe : probe(brokers)) {
+      if (probe.connectNanos >= 0) {
+        reachable.add(probe);
+      }
+    }
+    if (reachable.isEmpty()) {
+      LOG.log(Level.WARNING, "No broker was reachable, keeping the configured bootstrap list");
+      return String.join(",", brokers);
+    }
+    if (strategy == Strategy.LATENCY) {
+      reachable.sort(Comparator.comparingLong(probe -> probe.connectNanos));
+    } else {
+      Collections.shuffle(reachable, ThreadLocalRandom.current());
+    }
+    List<String> ordered = new ArrayList<>(reachable.size());
+    for (Probe probe : reachable) {
+      ordered.add(probe.broker);
+    }
+    return String.join(",", ordered);
+  }
+
+  private static List<Probe> probe(List<String> brokers) {
+    if (brokers.isEmpty()) {
+      return Collections.emptyList();
+    }
+    //Probes are cached per broker list, lists of different clusters or listeners do not share results
+    List<String> key = new ArrayList<>(brokers);
+    Probes cached = PROBES.get(key);
+    if (cached != null && cached.isFresh()) {
+      return cached.probes;
+    }
+    synchronized (BootstrapOptimizer.class) {
+      cached = PROBES.get(key);
+      if (cached != null && cached.isFresh()) {
+        return cached.probes;
+      }
+      List<Probe> current;
+      ExecutorService executor = Executors.newFixedThreadPool(Math.min(brokers.size(), 16));
+      try {
+        List<Future<Probe>> futures = new ArrayList<>();
+        for (String broker : brokers) {
+          futures.add(executor.submit((Callable<Probe>) () -> new Probe(broker, connect(broker))));
+        }
+        current = new ArrayList<>(brokers.size());
+        for (Future<Probe> future : futures) {
+          current.add(future.get());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return Collections.emptyList();
+      } catch (ExecutionException e) {
+        LOG.log(Level.WARNING, "Could not probe brokers", e);
+        return Collections.emptyList();
+      } finally {
+        executor.shutdownNow();
+      }
+      PROBES.put(key, new Probes(current));
+      LOG.log(Level.FINE, "Probed brokers:{0}", current);
+      return current;
+    }
+  }
+
+  /**
+   * TCP connect to the broker.
+   *
+   * @return connect time in nanoseconds or -1 if unreachable.
+   */
+  private static long connect(String broker) {
+    String address = broker.contains("://") ? broker.substring(broker.indexOf("://") + 3) : broker;
+    int separator = address.lastIndexOf(':');
+    if (separator < 0) {
+      return -1;
+    }
+    long start = System.nanoTime();
+    try (Socket socket = new Socket()) {
+      socket.connect(new InetSocketAddress(address.substring(0, separator),
+        Integer.parseInt(address.substring(separator + 1))), DEFAULT_CONNECT_TIMEOUT_MS);
+      return System.nanoTime() - start;
+    } catch (IOException | IllegalArgumentException e) {
+      LOG.log(Level.FINE, "Broker " + broker + " is unreachable", e);
+      return -1;
+    }
+  }
+
+  private static class Probes {
+    private final List<Probe> probes;
+    private final long probedAt = System.currentTimeMillis();
+
+    Probes(List<Probe> probes) {
+      this.probes = probes;
+    }
+
+    boolean isFresh() {
+      return System.currentTimeMillis() - probedAt < DEFAULT_PROBE_TTL_MS;
+    }
+  }
+
+  private static class Probe {
+    private final String broker;
+    private final long connectNanos;
+
+    Probe(String broker, long connectNanos) {
+      this.broker = broker;
+      this.connectNanos = connectNanos;
+    }
+
+    @Override
+    public String toString() {
+      return broker + "=" + (connectNanos < 0 ? "unreachable" : connectNanos / 1000 + "us");
+    }
+  }
+}
@@ -0,0 +1,34 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util.kafka;
+
+import org.apache.kafka.common.TopicPartition;
+
+/**
+ * Receives the consumer lag computed by {@link ConsumerLagMonitor}.
+ */
+@FunctionalInterface
+public interface ConsumerLagListener {
+
+  /**
+   * Called once per partition and interval.
+   *
+   * @param group consumer group
+   * @param partition topic partition
+   * @param committedOffset offset committed by the group, -1 if the group has not committed an offset for the
+   * partition, whose lag is then counted from the log start offset.
+   * @param endOffset log end offset of the partition
+   */
+  void onLag(String group, TopicPartition partition, long committedOffset, long endOffset);
+}
@@ -0,0 +1,313 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util.kafka;
+
+import io.hops.util.Constants;
+import io.hops.util.Hops;
+import org.apache.kafka.clients.CommonClientConfigs;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.ConsumerGroupDescription;
+import org.apache.kafka.clients.admin.MemberDescription;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Periodically computes the lag of the consumer groups of the job, as set by Hopsworks in the
+ * hopsworks.kafka.consumergroups system property, and reports it to the registered listeners.
+ * <p>
+ * A single AdminClient is used for the committed offsets and a single consumer without group for the log end
+ * offsets, both running on one daemon thread, so monitoring does not add per-partition connections. Monitors created
+ * with the same Kafka configuration share these clients and the thread.
+ * <p>
+ * Partitions for which a group has not committed an offset yet, e.g. a new group, are reported with their full lag
+ * from the log start offset, as long as they are assigned to a member of the group or belong to a monitored topic.
+ *
+ * <pre>
+ * ConsumerLagMonitor monitor = ConsumerLagMonitor.builder().setInterval(30, TimeUnit.SECONDS)
+ *   .addListener((group, partition, committed, end) -&gt; ...).start();
+ * </pre>
+ */
+public class ConsumerLagMonitor implements Closeable {
+
+  private static final Logger LOG = Logger.getLogger(ConsumerLagMonitor.class.getName());
+
+  private long interval = 60;
+  private TimeUnit intervalUnit = TimeUnit.SECONDS;
+  private List<String> groups;
+  private Set<String> topics;
+  private final List<ConsumerLagListener> listeners = new CopyOnWriteArrayList<>();
+  private final Map<String, Map<TopicPartition, Long>> lag = new ConcurrentHashMap<>();
+
+  private static final Map<String, SharedClients> SHARED_CLIENTS = new HashMap<>();
+
+  private SharedClients clients;
+  private ScheduledFuture<?> task;
+
+  private ConsumerLagMonitor() {
+    String groupsProperty = System.getProperty(Constants.KAFKA_CONSUMER_GROUPS);
+    groups = groupsProperty == null || groupsProperty.isEmpty() ? Collections.emptyList() :
+      Arrays.asList(groupsProperty.split(","));
+    String topicsProperty = System.getProperty(Constants.KAFKA_TOPICS_ENV_VAR);
+    topics = topicsProperty == null || topicsProperty.isEmpty() ? null :
+      new HashSet<>(Arrays.asList(topicsProperty.split(",")));
+  }
+
+  public static ConsumerLagMonitor builder() {
+    return new ConsumerLagMonitor();
+  }
+
+  public ConsumerLagMonitor setInterval(long interval, TimeUnit intervalUnit) {
+    this.interval = interval;
+    this.intervalUnit = intervalUnit;
+    return this;
+  }
+
+  /**
+   * Monitor these consumer groups instead of the ones configured for the job.
+   *
+   * @param groups consumer groups
+   * @return this monitor
+   */
+  public ConsumerLagMonitor setGroups(String... groups) {
+    this.groups = Arrays.asList(groups);
+    return this;
+  }
+
+  /**
+   * Only report partitions of these topics. By default the topics configured for the job are reported.
+   *
+   * @param topics topics, none to report all topics the groups consume.
+   * @return this monitor
+   */
+  public ConsumerLagMonitor setTopics(String... topics) {
+    this.topics = topics.length == 0 ? null : new HashSet<>(Arrays.asList(topics));
+    return this;
+  }
+
+  public ConsumerLagMonitor addListener(ConsumerLagListener listener) {
+    listeners.add(listener);
+    return this;
+  }
+
+  /**
+   * Create the Kafka clients and start monitoring.
+   *
+   * @return this monitor
+   */
+  public synchronized ConsumerLagMonitor start() {
+    if (task != null) {
+      return this;
+    }
+    if (groups.isEmpty()) {
+      throw new IllegalStateException("No consumer groups to monitor.");
+    }
+    clients = SharedClients.acquire(KafkaUtils.getKafkaSSLProperties());
+    task = clients.scheduler.scheduleWithFixedDelay(this::poll, 0, interval, intervalUnit);
+    return this;
+  }
+
+  /**
+   * Latest lag per consumer group and partition.
+   *
+   * @return lag, empty until the first interval completed.
+   */
+  public Map<String, Map<TopicPartition, Long>> getLag() {
+    return Collections.unmodifiableMap(lag);
+  }
+
+  /**
+   * Latest total lag of a consumer group over all its partitions.
+   *
+   * @param group consumer group
+   * @return total lag
+   */
+  public long getTotalLag(String group) {
+    Map<TopicPartition, Long> groupLag = lag.get(group);
+    if (groupLag == null) {
+      return 0;
+    }
+    long total = 0;
+    for (Long partitionLag : groupLag.values()) {
+      total += partitionLag;
+    }
+    return total;
+  }
+
+  private void poll() {
+    for (String group : groups) {
+      try {
+        Map<TopicPartition, OffsetAndMetadata> committed = clients.adminClient.listConsumerGroupOffsets(group)
+          .partitionsToOffsetAndMetadata().get(intervalUnit.toMillis(interval), TimeUnit.MILLISECONDS);
+        Set<TopicPartition> partitions = getPartitions(group, committed);
+        Map<TopicPartition, Long> endOffsets = clients.offsetConsumer.endOffsets(partitions);
+        List<TopicPartition> uncommitted = new ArrayList<>();
+        for (TopicPartition partition : partitions) {
+          if (committed.get(partition) == null) {
+            uncommitted.add(partition);
+          }
+        }
+        //A group that never committed has to consume the whole log, its lag is counted from the log start
+        Map<TopicPartition, Long> startOffsets = uncommitted.isEmpty() ? Collections.emptyMap()
+          : clients.offsetConsumer.beginningOffsets(uncommitted);
+        Map<TopicPartition, Long> groupLag = new HashMap<>();
+        for (TopicPartition partition : partitions) {
+          Long endOffset = endOffsets.get(partition);
+          OffsetAndMetadata offset = committed.get(partition);
+          Long consumedOffset = offset != null ? Long.valueOf(offset.offset()) : startOffsets.get(partition);
+          if (endOffset == null || consumedOffset == null) {
+            continue;
+          }
+          groupLag.put(partition, Math.max(0, endOffset - consumedOffset));
+          for (ConsumerLagListener listener : listeners) {
+            listener.onLag(group, partition, offset != null ? offset.offset() : -1, endOffset);
+          }
+        }
+        lag.put(group, groupLag);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (Exception e) {
+        LOG.log(Level.WARNING, "Could not compute lag of consumer group " + group, e);
+      }
+    }
+  }
+
+  /**
+   * Partitions of the group: the ones it committed offsets for, the ones assigned to its members and all partitions
+   * of the monitored topics, so that partitions the group never committed are reported too.
+   */
+  private Set<TopicPartition> getPartitions(String group, Map<TopicPartition, OffsetAndMetadata> committed)
+    throws InterruptedException, ExecutionException, TimeoutException {
+    Set<TopicPartition> partitions = new HashSet<>(committed.keySet());
+    ConsumerGroupDescription description = clients.adminClient.describeConsumerGroups(Collections.singleton(group))
+      .describedGroups().get(group).get(intervalUnit.toMillis(interval), TimeUnit.MILLISECONDS);
+    for (MemberDescription member : description.members()) {
+      partitions.addAll(member.assignment().topicPartitions());
+    }
+    if (topics != null) {
+      for (String topic : topics) {
+        List<PartitionInfo> infos = clients.offsetConsumer.partitionsFor(topic);
+        if (infos != null) {
+          for (PartitionInfo info : infos) {
+            partitions.add(new TopicPartition(info.topic(), info.partition()));
+          }
+        }
+      }
+      partitions.removeIf(partition -> !topics.contains(partition.topic()));
+    }
+    return partitions;
+  }
+
+  @Override
+  public synchronized void close() {
+    if (task == null) {
+      return;
+    }
+    task.cancel(false);
+    clients.release();
+    task = null;
+    clients = null;
+  }
+
+  /**
+   * Kafka clients and the thread using them, shared by all monitors with the same configuration. KafkaConsumer is not
+   * thread safe, so every monitor polls on the single thread of its clients.
+   */
+  private static final class SharedClients {
+    private final String key;
+    private final AdminClient adminClient;
+    private final KafkaConsumer<byte[], byte[]> offsetConsumer;
+    private final ScheduledExecutorService scheduler;
+    private int references;
+
+    private SharedClients(String key, Properties properties) {
+      this.key = key;
+      adminClient = AdminClient.create(properties);
+      Properties consumerProperties = new Properties();
+      consumerProperties.putAll(properties);
+      consumerProperties.setProperty(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+      offsetConsumer = new KafkaConsumer<>(consumerProperties, new ByteArrayDeserializer(),
+        new ByteArrayDeserializer());
+      scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "hops-kafka-lag-monitor");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+
+    /**
+     * The clients are shared by the set of brokers rather than the bootstrap list, whose order depends on the
+     * bootstrap strategy and may change between calls.
+     */
+    static SharedClients acquire(Properties sslProperties) {
+      List<String> brokers = Hops.getBrokerEndpointsList();
+      String key = (brokers == null ? Collections.emptySet() : new TreeSet<>(brokers)) + " "
+        + new TreeMap<>(sslProperties);
+      synchronized (SHARED_CLIENTS) {
+        SharedClients clients = SHARED_CLIENTS.computeIfAbsent(key, k -> {
+          Properties properties = new Properties();
+          properties.putAll(sslProperties);
+          properties.setProperty(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, KafkaUtils.getBootstrapServers());
+          return new SharedClients(k, properties);
+        });
+        clients.references++;
+        return clients;
+      }
+    }
+
+    void release() {
+      synchronized (SHARED_CLIENTS) {
+        if (--references > 0) {
+          return;
+        }
+        SHARED_CLIENTS.remove(key);
+      }
+      scheduler.shutdownNow();
+      try {
+        scheduler.awaitTermination(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      offsetConsumer.close();
+      adminClient.close();
+    }
+  }
+}
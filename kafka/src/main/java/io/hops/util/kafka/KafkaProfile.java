@@ -0,0 +1,88 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+
+import java.util.Properties;
+
+/**
+ * Kafka client tuning profiles applied on top of the Hops SSL properties.
+ */
+public enum KafkaProfile {
+
+  /**
+   * Kafka client defaults.
+   */
+  DEFAULT,
+  /**
+   * Large batches and fetches, compressed, for bulk pipelines where a few hundred milliseconds of latency are fine.
+   */
+  THROUGHPUT,
+  /**
+   * Send and fetch as soon as possible.
+   */
+  LOW_LATENCY;
+
+  /**
+   * Apply the consumer settings of this profile. Properties already present are not overridden.
+   *
+   * @param properties consumer properties
+   * @return the same properties
+   */
+  public Properties applyConsumer(Properties properties) {
+    switch (this) {
+      case THROUGHPUT:
+        properties.putIfAbsent(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, "1048576");
+        properties.putIfAbsent(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, "500");
+        properties.putIfAbsent(ConsumerConfig.MAX_PARTITION_FETCH_BYTES_CONFIG, "4194304");
+        properties.putIfAbsent(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, "5000");
+        properties.putIfAbsent(ConsumerConfig.RECEIVE_BUFFER_CONFIG, "1048576");
+        break;
+      case LOW_LATENCY:
+        properties.putIfAbsent(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, "1");
+        properties.putIfAbsent(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, "10");
+        break;
+      default:
+        break;
+    }
+    return properties;
+  }
+
+  /**
+   * Apply the producer settings of this profile. Properties already present are not overridden.
+   *
+   * @param properties producer properties
+   * @return the same properties
+   */
+  public Properties applyProducer(Properties properties) {
+    switch (this) {
+      case THROUGHPUT:
+        properties.putIfAbsent(ProducerConfig.LINGER_MS_CONFIG, "50");
+        properties.putIfAbsent(ProducerConfig.BATCH_SIZE_CONFIG, "262144");
+        properties.putIfAbsent(ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4");
+        properties.putIfAbsent(ProducerConfig.BUFFER_MEMORY_CONFIG, "67108864");
+        properties.putIfAbsent(ProducerConfig.SEND_BUFFER_CONFIG, "1048576");
+        break;
+      case LOW_LATENCY:
+        properties.putIfAbsent(ProducerConfig.LINGER_MS_CONFIG, "0");
+        properties.putIfAbsent(ProducerConfig.COMPRESSION_TYPE_CONFIG, "none");
+        break;
+      default:
+        break;
+    }
+    return properties;
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util.kafka;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.hops.util.Constants;
+import io.hops.util.Hops;
+import io.hops.util.exceptions.JWTNotFoundException;
+import io.hops.util.exceptions.SchemaNotFoundException;
+import org.apache.avro.Schema;
+import org.apache.kafka.clients.CommonClientConfigs;
+import org.apache.kafka.common.config.SslConfigs;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kafka client configuration and Avro schemas of the topics of the current project.
+ */
+public class KafkaUtils {
+
+  private static final Cache<String, Schema> SCHEMA_CACHE = CacheBuilder.newBuilder()
+    .expireAfterWrite(Long.getLong(Constants.HOPSUTIL_SCHEMA_CACHE_TTL_MS, 300000L), TimeUnit.MILLISECONDS).build();
+
+  private KafkaUtils() {
+  }
+
+  /**
+   * Get the SSL properties of a Kafka client, using the keystore and truststore of the job.
+   *
+   * @return Kafka client properties
+   */
+  public static Properties getKafkaSSLProperties() {
+    Hops.checkInitialized();
+    Properties properties = new Properties();
+    properties.setProperty(CommonClientConfigs.SECURITY_PROTOCOL_CONFIG, "SSL");
+    properties.setProperty(SslConfigs.SSL_TRUSTSTORE_LOCATION_CONFIG, Hops.getTrustStore());
+    properties.setProperty(SslConfigs.SSL_TRUSTSTORE_PASSWORD_CONFIG, Hops.getTruststorePwd());
+    properties.setProperty(SslConfigs.SSL_KEYSTORE_LOCATION_CONFIG, Hops.getKeyStore());
+    properties.setProperty(SslConfigs.SSL_KEYSTORE_PASSWORD_CONFIG, Hops.getKeystorePwd());
+    properties.setProperty(SslConfigs.SSL_KEY_PASSWORD_CONFIG, Hops.getKeystorePwd());
+    properties.setProperty(SslConfigs.SSL_ENDPOINT_IDENTIFICATION_ALGORITHM_CONFIG, "");
+    return properties;
+  }
+
+  /**
+   * Get Kafka bootstrap servers for a new client. By default this is the broker endpoints list as is. If the
+   * hopsutil.kafka.bootstrap.strategy system property is set to latency or random, unreachable brokers are dropped
+   * and the remaining ones are ordered by connect time or shuffled for every call.
+   *
+   * @return bootstrap servers.
+   */
+  public static String getBootstrapServers() {
+    return BootstrapOptimizer.getBootstrapServers(Hops.getBrokerEndpointsList(), BootstrapOptimizer.Strategy
+      .fromString(System.getProperty(Constants.HOPSUTIL_KAFKA_BOOTSTRAP_STRATEGY)));
+  }
+
+  /**
+   * Get Avro Schemas for all Kafka topics directly using topics retrieved from Hopsworks.
+   *
+   * @param topics kafka topics.
+   * @return Map of schemas.
+   * @throws JWTNotFoundException JWTNotFoundException
+   * @throws SchemaNotFoundException SchemaNotFoundException
+   */
+  public static Map<String, Schema> getSchemas(String[] topics) throws JWTNotFoundException,
+    SchemaNotFoundException {
+    if (topics == null) {
+      throw new IllegalArgumentException("Topics were not provided.");
+    }
+    Map<String, Schema> schemas = new HashMap<>();
+    for (String topic : topics) {
+      Schema.Parser parser = new Schema.Parser();
+      schemas.put(topic, parser.parse(Hops.getSchema(topic)));
+    }
+    return schemas;
+  }
+
+  /**
+   * Get the parsed Avro schema of a Kafka topic. Schemas are cached per JVM for hopsutil.schema.cache.ttl.ms, five
+   * minutes by default, so this method can be called from serializers on every task without hitting the REST API
+   * while schema changes in Hopsworks are still picked up by long-running jobs.
+   *
+   * @param topic Kafka topic name.
+   * @return Avro schema
+   * @throws JWTNotFoundException JWTNotFoundException
+   * @throws SchemaNotFoundException SchemaNotFoundException
+   */
+  public static Schema getCachedSchema(String topic) throws JWTNotFoundException, SchemaNotFoundException {
+    Schema schema = SCHEMA_CACHE.getIfPresent(topic);
+    if (schema == null) {
+      schema = new Schema.Parser().parse(Hops.getSchema(topic));
+      SCHEMA_CACHE.put(topic, schema);
+    }
+    return schema;
+  }
+}
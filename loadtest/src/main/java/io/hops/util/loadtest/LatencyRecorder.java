@@ -0,0 +1,79 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util.loadtest;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Latency samples of one operation in microseconds, kept raw so that the samples of all workers can be merged before
+ * the percentiles are taken.
+ */
+class LatencyRecorder implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private long[] samples = new long[1024];
+  private int count;
+  private long errors;
+
+  void record(long micros) {
+    if (count == samples.length) {
+      samples = Arrays.copyOf(samples, count * 2);
+    }
+    samples[count++] = micros;
+  }
+
+  void recordError() {
+    errors++;
+  }
+
+  void merge(LatencyRecorder other) {
+    if (count + other.count > samples.length) {
+      samples = Arrays.copyOf(samples, count + other.count);
+    }
+    System.arraycopy(other.samples, 0, samples, count, other.count);
+    count += other.count;
+    errors += other.errors;
+  }
+
+  int getCount() {
+    return count;
+  }
+
+  long getErrors() {
+    return errors;
+  }
+
+  /**
+   * Sort the samples, percentile must only be called afterwards.
+   */
+  void sort() {
+    Arrays.sort(samples, 0, count);
+  }
+
+  /**
+   * Nearest-rank percentile of the sorted samples.
+   *
+   * @param percentile between 0 and 100.
+   * @return latency in microseconds, 0 without samples.
+   */
+  long percentile(double percentile) {
+    if (count == 0) {
+      return 0;
+    }
+    int rank = (int) Math.ceil(percentile / 100 * count);
+    return samples[Math.min(count, Math.max(rank, 1)) - 1];
+  }
+}
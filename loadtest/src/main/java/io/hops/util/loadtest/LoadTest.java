@@ -0,0 +1,174 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util.loadtest;
+
+import io.hops.util.HopsClientMetrics;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of hops-util against a local Hopsworks stub. It starts StubHopsworks, launches a number of worker JVMs
+ * that each run many client threads through Hops and CredentialsProvider, then merges their latencies and reports
+ * throughput and p50/p99/p999 per operation.
+ * <p>
+ * Options are given as --name=value, see the usage below. Arguments starting with -D are passed on to the worker
+ * JVMs, so any hopsutil.* property of the client can be varied between runs.
+ */
+public class LoadTest {
+
+  private static final String USAGE = "Usage: LoadTest [--processes=2] [--threads=8] [--duration=30]"
+    + " [--requests=0] [--latency-ms=5] [--jitter-ms=5] [--error-rate=0] [--error-status=503]"
+    + " [--elastic-token-ttl=120] [--server-threads=64] [--mix=schema=4,secret_get=2,elastic_token=2,credentials=1,"
+    + "roles=1] [--dir=target/loadtest] [-Dhopsutil.property=value ...]";
+
+  private static final int PROJECT_ID = 119;
+  private static final String PROJECT_NAME = "loadtest";
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new HashMap<>();
+    List<String> properties = new ArrayList<>();
+    for (String arg : args) {
+      if (arg.startsWith("-D")) {
+        properties.add(arg);
+      } else if (arg.startsWith("--") && arg.indexOf('=') > 2) {
+        options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+      } else {
+        System.err.println(USAGE);
+        System.exit(2);
+      }
+    }
+    int processes = Integer.parseInt(options.getOrDefault("processes", "2"));
+    int threads = Integer.parseInt(options.getOrDefault("threads", "8"));
+    long durationS = Long.parseLong(options.getOrDefault("duration", "30"));
+    long requests = Long.parseLong(options.getOrDefault("requests", "0"));
+    String mix = options.getOrDefault("mix", "schema=4,secret_get=2,elastic_token=2,credentials=1,roles=1");
+    //Fail before starting anything on a misspelled operation
+    LoadTestWorker.parseMix(mix);
+
+    Path dir = Paths.get(options.getOrDefault("dir", "target/loadtest")).toAbsolutePath();
+    Files.createDirectories(dir);
+    Path keystore = StubHopsworks.createStores(dir);
+    Files.write(dir.resolve("token.jwt"), StubHopsworks.jwt(TimeUnit.DAYS.toSeconds(1))
+      .getBytes(StandardCharsets.UTF_8));
+    Files.write(dir.resolve("material_passwd"), StubHopsworks.STORE_PASSWORD.getBytes(StandardCharsets.UTF_8));
+
+    StubHopsworks stub = new StubHopsworks(PROJECT_ID,
+      Long.parseLong(options.getOrDefault("latency-ms", "5")),
+      Long.parseLong(options.getOrDefault("jitter-ms", "5")),
+      Double.parseDouble(options.getOrDefault("error-rate", "0")),
+      Integer.parseInt(options.getOrDefault("error-status", "503")),
+      Long.parseLong(options.getOrDefault("elastic-token-ttl", "120")));
+    int port = stub.start(keystore, Integer.parseInt(options.getOrDefault("server-threads", "64")));
+    System.out.println("Stub Hopsworks listening on https://localhost:" + port);
+
+    List<Process> workers = new ArrayList<>();
+    List<Path> resultFiles = new ArrayList<>();
+    try {
+      for (int i = 0; i < processes; i++) {
+        Path result = dir.resolve("worker-" + i + ".bin");
+        Files.deleteIfExists(result);
+        resultFiles.add(result);
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("-Dhopsworks.job.type=spark");
+        command.add("-Dhopsworks.restendpoint=https://localhost:" + port);
+        command.add("-Dhopsworks.projectid=" + PROJECT_ID);
+        command.add("-Dhopsworks.projectname=" + PROJECT_NAME);
+        command.add("-Dhopsworks.domain.truststore=" + dir.resolve("truststore.jks"));
+        command.add("-D" + LoadTestWorker.THREADS + "=" + threads);
+        command.add("-D" + LoadTestWorker.DURATION_MS + "=" + TimeUnit.SECONDS.toMillis(durationS));
+        command.add("-D" + LoadTestWorker.REQUESTS + "=" + requests);
+        command.add("-D" + LoadTestWorker.MIX + "=" + mix);
+        command.addAll(properties);
+        command.add(LoadTestWorker.class.getName());
+        command.add(result.toString());
+        workers.add(new ProcessBuilder(command).directory(dir.toFile()).redirectErrorStream(true)
+          .redirectOutput(dir.resolve("worker-" + i + ".log").toFile()).start());
+      }
+      for (int i = 0; i < workers.size(); i++) {
+        int exit = workers.get(i).waitFor();
+        if (exit != 0) {
+          System.err.println("Worker " + i + " exited with " + exit + ", see " + dir.resolve("worker-" + i + ".log"));
+        }
+      }
+    } finally {
+      for (Process worker : workers) {
+        worker.destroy();
+      }
+      stub.stop();
+    }
+    report(resultFiles, stub, System.out);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void report(List<Path> resultFiles, StubHopsworks stub, PrintStream out)
+    throws IOException, ClassNotFoundException {
+    Map<String, LatencyRecorder> total = new LinkedHashMap<>();
+    HopsClientMetrics.Snapshot metrics = null;
+    long elapsedMs = 0;
+    for (Path resultFile : resultFiles) {
+      if (!Files.exists(resultFile)) {
+        continue;
+      }
+      try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(resultFile.toFile()))) {
+        elapsedMs = Math.max(elapsedMs, in.readLong());
+        HopsClientMetrics.Snapshot snapshot = (HopsClientMetrics.Snapshot) in.readObject();
+        metrics = metrics == null ? snapshot : metrics.plus(snapshot);
+        for (Map.Entry<String, LatencyRecorder> entry : ((Map<String, LatencyRecorder>) in.readObject()).entrySet()) {
+          total.computeIfAbsent(entry.getKey(), name -> new LatencyRecorder()).merge(entry.getValue());
+        }
+      }
+    }
+    if (metrics == null) {
+      out.println("No worker completed");
+      return;
+    }
+
+    double seconds = Math.max(elapsedMs, 1) / 1000.0;
+    out.printf("%-14s %10s %8s %10s %10s %10s %10s %10s%n", "operation", "ops", "errors", "ops/s", "p50 ms",
+      "p99 ms", "p999 ms", "max ms");
+    LatencyRecorder all = new LatencyRecorder();
+    for (Map.Entry<String, LatencyRecorder> entry : total.entrySet()) {
+      all.merge(entry.getValue());
+      print(out, entry.getKey(), entry.getValue(), seconds);
+    }
+    print(out, "total", all, seconds);
+    out.println();
+    out.println("Client: " + metrics);
+    out.println("Stub: " + stub.getRequests() + " requests, " + stub.getInjectedErrors() + " injected errors, "
+      + String.format("%.0f", stub.getRequests() / seconds) + " requests/s");
+  }
+
+  private static void print(PrintStream out, String name, LatencyRecorder recorder, double seconds) {
+    recorder.sort();
+    out.printf("%-14s %10d %8d %10.1f %10.3f %10.3f %10.3f %10.3f%n", name, recorder.getCount(),
+      recorder.getErrors(), recorder.getCount() / seconds, recorder.percentile(50) / 1000.0,
+      recorder.percentile(99) / 1000.0, recorder.percentile(99.9) / 1000.0, recorder.percentile(100) / 1000.0);
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util.loadtest;
+
+import io.hops.util.CredentialsProvider;
+import io.hops.util.Hops;
+import io.hops.util.HopsClientMetrics;
+
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Client JVM of the load test. It runs in a working directory prepared by LoadTest with the system properties of a
+ * Spark container, so Hops sets itself up against the stub exactly as it would in a job.
+ * <p>
+ * Every thread picks operations from the weighted mix until the duration has passed or it has run its requests, then
+ * the latencies and the HopsClientMetrics snapshot of the JVM are written to the result file given as argument.
+ */
+public class LoadTestWorker {
+
+  private static final Logger LOG = Logger.getLogger(LoadTestWorker.class.getName());
+
+  static final String THREADS = "loadtest.threads";
+  static final String DURATION_MS = "loadtest.duration.ms";
+  static final String REQUESTS = "loadtest.requests";
+  static final String MIX = "loadtest.mix";
+  static final String TOPIC = "loadtest.topic";
+
+  /**
+   * Operations of the client under test, by the name used in the mix.
+   */
+  enum Operation {
+    SCHEMA {
+      @Override
+      void run(String topic) throws Exception {
+        Hops.getSchema(topic);
+      }
+    },
+    SECRET_GET {
+      @Override
+      void run(String topic) throws Exception {
+        Hops.getSecret("secret");
+      }
+    },
+    SECRET_CREATE {
+      @Override
+      void run(String topic) throws Exception {
+        Hops.createSecret("secret-" + ThreadLocalRandom.current().nextInt(1000), "value");
+      }
+    },
+    ELASTIC_TOKEN {
+      @Override
+      void run(String topic) throws Exception {
+        Hops.getElasticAuthorizationToken();
+      }
+    },
+    CREDENTIALS {
+      @Override
+      void run(String topic) throws Exception {
+        //Skip the credential cache, every call is a session-token request
+        CredentialsProvider.clearCache();
+        CredentialsProvider.getCredentials(null, "loadtest", 3600);
+      }
+    },
+    ROLES {
+      @Override
+      void run(String topic) throws Exception {
+        CredentialsProvider.getRoles();
+      }
+    };
+
+    abstract void run(String topic) throws Exception;
+  }
+
+  public static void main(String[] args) throws Exception {
+    int threads = Integer.getInteger(THREADS, 8);
+    long durationMs = Long.getLong(DURATION_MS, 30000L);
+    long requests = Long.getLong(REQUESTS, 0L);
+    String topic = System.getProperty(TOPIC, "loadtest");
+    Operation[] mix = parseMix(System.getProperty(MIX, "schema=4,secret_get=2,elastic_token=2,credentials=1,roles=1"));
+
+    //Run the static setup of Hops before the clock starts
+    Hops.getProjectId();
+
+    List<Map<Operation, LatencyRecorder>> results = new ArrayList<>();
+    List<Thread> workers = new ArrayList<>();
+    CountDownLatch start = new CountDownLatch(1);
+    for (int i = 0; i < threads; i++) {
+      Map<Operation, LatencyRecorder> recorders = new LinkedHashMap<>();
+      results.add(recorders);
+      Thread thread = new Thread(() -> run(start, mix, topic, durationMs, requests, recorders), "loadtest-" + i);
+      workers.add(thread);
+      thread.start();
+    }
+    long begin = System.nanoTime();
+    start.countDown();
+    for (Thread thread : workers) {
+      thread.join();
+    }
+    long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+
+    Map<String, LatencyRecorder> merged = new LinkedHashMap<>();
+    for (Map<Operation, LatencyRecorder> recorders : results) {
+      for (Map.Entry<Operation, LatencyRecorder> entry : recorders.entrySet()) {
+        merged.computeIfAbsent(entry.getKey().name().toLowerCase(Locale.ENGLISH), name -> new LatencyRecorder())
+          .merge(entry.getValue());
+      }
+    }
+    try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(args[0]))) {
+      out.writeLong(elapsedMs);
+      out.writeObject(HopsClientMetrics.snapshot());
+      out.writeObject(merged);
+    }
+    //Hops leaves non-daemon threads behind in some configurations
+    System.exit(0);
+  }
+
+  private static void run(CountDownLatch start, Operation[] mix, String topic, long durationMs, long requests,
+    Map<Operation, LatencyRecorder> recorders) {
+    try {
+      start.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMs);
+    for (long i = 0; requests > 0 ? i < requests : System.nanoTime() < deadline; i++) {
+      Operation operation = mix[ThreadLocalRandom.current().nextInt(mix.length)];
+      LatencyRecorder recorder = recorders.computeIfAbsent(operation, op -> new LatencyRecorder());
+      long begin = System.nanoTime();
+      try {
+        operation.run(topic);
+        recorder.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - begin));
+      } catch (Exception e) {
+        recorder.recordError();
+        LOG.log(Level.FINE, "Operation " + operation + " failed", e);
+      }
+    }
+  }
+
+  /**
+   * Expand a mix such as schema=4,secret_get=1 into an array holding every operation as often as its weight.
+   */
+  static Operation[] parseMix(String mix) {
+    List<Operation> operations = new ArrayList<>();
+    for (String part : mix.split(",")) {
+      String[] weighted = part.trim().split("=");
+      Operation operation = Operation.valueOf(weighted[0].trim().toUpperCase(Locale.ENGLISH));
+      int weight = weighted.length > 1 ? Integer.parseInt(weighted[1].trim()) : 1;
+      for (int i = 0; i < weight; i++) {
+        operations.add(operation);
+      }
+    }
+    if (operations.isEmpty()) {
+      throw new IllegalArgumentException("Empty operation mix: " + mix);
+    }
+    return operations.toArray(new Operation[0]);
+  }
+}
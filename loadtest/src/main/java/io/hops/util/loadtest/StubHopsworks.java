@@ -0,0 +1,247 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Base64;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * HTTPS stub of the Hopsworks REST endpoints used by Hops and CredentialsProvider: Kafka subjects, secrets, project
+ * info, the Elastic jwt, AWS session tokens and cloud role mappings.
+ * <p>
+ * Every response is delayed by a fixed latency plus a random jitter, and a configurable fraction of requests fails with
+ * 503 Service Unavailable and a Retry-After header, or with another error status.
+ */
+public class StubHopsworks {
+
+  static final String STORE_PASSWORD = "changeit";
+  static final String SCHEMA = "{\"type\":\"record\",\"name\":\"event\",\"fields\":["
+    + "{\"name\":\"id\",\"type\":\"long\"},{\"name\":\"payload\",\"type\":\"string\"}]}";
+
+  private static final Pattern SUBJECTS = Pattern.compile("/project/\\d+/kafka/topics/([^/]+)/subjects");
+  private static final Pattern VERSIONS = Pattern.compile("/project/\\d+/kafka/subjects/[^/]+/versions");
+  private static final Pattern VERSION = Pattern.compile("/project/\\d+/kafka/subjects/[^/]+/versions/\\d+");
+  private static final Pattern SECRET = Pattern.compile("/users/secrets(/shared|/[^/]+)?");
+  private static final Pattern PROJECT_INFO = Pattern.compile("/project/getProjectInfo/([^/]+)");
+  private static final Pattern ELASTIC_JWT = Pattern.compile("/elastic/jwt/\\d+");
+  private static final Pattern SESSION_TOKEN = Pattern.compile("/project/\\d+/cloud/aws/session-token");
+  private static final Pattern ROLE_MAPPINGS = Pattern.compile("/project/\\d+/cloud/role-mappings(/[^/]+)?");
+
+  private final int projectId;
+  private final long latencyMs;
+  private final long jitterMs;
+  private final double errorRate;
+  private final int errorStatus;
+  private final long elasticTokenTtlS;
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong injectedErrors = new AtomicLong();
+
+  private HttpsServer server;
+  private ExecutorService executor;
+
+  StubHopsworks(int projectId, long latencyMs, long jitterMs, double errorRate, int errorStatus,
+    long elasticTokenTtlS) {
+    this.projectId = projectId;
+    this.latencyMs = latencyMs;
+    this.jitterMs = jitterMs;
+    this.errorRate = errorRate;
+    this.errorStatus = errorStatus;
+    this.elasticTokenTtlS = elasticTokenTtlS;
+  }
+
+  /**
+   * Start the server on an ephemeral port of the loopback interface.
+   *
+   * @param keystore PKCS12 keystore with the certificate of localhost
+   * @param threads number of threads serving requests, delayed requests hold a thread.
+   * @return the port
+   * @throws IOException IOException
+   * @throws GeneralSecurityException GeneralSecurityException
+   */
+  int start(Path keystore, int threads) throws IOException, GeneralSecurityException {
+    KeyStore store = KeyStore.getInstance("PKCS12");
+    try (InputStream in = new FileInputStream(keystore.toFile())) {
+      store.load(in, STORE_PASSWORD.toCharArray());
+    }
+    KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+    kmf.init(store, STORE_PASSWORD.toCharArray());
+    SSLContext context = SSLContext.getInstance("TLS");
+    context.init(kmf.getKeyManagers(), null, null);
+
+    server = HttpsServer.create(new InetSocketAddress("localhost", 0), 1024);
+    server.setHttpsConfigurator(new HttpsConfigurator(context));
+    executor = Executors.newFixedThreadPool(threads);
+    server.setExecutor(executor);
+    server.createContext("/hopsworks-api/api", this::handle);
+    server.start();
+    return server.getAddress().getPort();
+  }
+
+  void stop() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  long getRequests() {
+    return requests.get();
+  }
+
+  long getInjectedErrors() {
+    return injectedErrors.get();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      requests.incrementAndGet();
+      drain(exchange.getRequestBody());
+      long delay = latencyMs + (jitterMs > 0 ? ThreadLocalRandom.current().nextLong(jitterMs + 1) : 0);
+      if (delay > 0) {
+        Thread.sleep(delay);
+      }
+      if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+        injectedErrors.incrementAndGet();
+        if (errorStatus == 503 || errorStatus == 429) {
+          exchange.getResponseHeaders().set("Retry-After", "1");
+        }
+        send(exchange, errorStatus, new JSONObject().put("errorMsg", "Injected error").put("usrMsg", "").toString());
+        return;
+      }
+      String path = exchange.getRequestURI().getPath().substring("/hopsworks-api/api".length());
+      String body = route(exchange.getRequestMethod(), path);
+      if (body == null) {
+        send(exchange, 404, new JSONObject().put("errorMsg", "Not found").put("usrMsg", path).toString());
+      } else {
+        send(exchange, 200, body);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private String route(String method, String path) {
+    Matcher matcher;
+    JSONObject body;
+    if ((matcher = SUBJECTS.matcher(path)).matches()) {
+      body = new JSONObject().put("id", 1).put("subject", matcher.group(1)).put("version", 1).put("schema", SCHEMA);
+    } else if (VERSION.matcher(path).matches()) {
+      body = new JSONObject().put("schema", SCHEMA);
+    } else if (VERSIONS.matcher(path).matches()) {
+      return new JSONArray().put(1).toString();
+    } else if (SECRET.matcher(path).matches()) {
+      body = "GET".equals(method) ? new JSONObject().put("items", new JSONArray().put(new JSONObject()
+        .put("name", "secret").put("secret", "stub-secret"))) : new JSONObject();
+    } else if ((matcher = PROJECT_INFO.matcher(path)).matches()) {
+      body = new JSONObject().put("projectId", projectId).put("projectName", matcher.group(1));
+    } else if (ELASTIC_JWT.matcher(path).matches()) {
+      body = new JSONObject().put("token", jwt(elasticTokenTtlS));
+    } else if (SESSION_TOKEN.matcher(path).matches()) {
+      body = new JSONObject().put("accessKeyId", "ASIASTUB").put("secretAccessKey", "stub-secret-key")
+        .put("sessionToken", "stub-session-token");
+    } else if ((matcher = ROLE_MAPPINGS.matcher(path)).matches()) {
+      JSONObject mapping = new JSONObject().put("id", 1).put("cloudRole", "arn:aws:iam::000000000000:role/stub");
+      body = matcher.group(1) == null ? new JSONObject().put("items", new JSONArray().put(mapping)) : mapping;
+    } else {
+      return null;
+    }
+    return body.toString();
+  }
+
+  private static void send(HttpExchange exchange, int status, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  private static void drain(InputStream in) throws IOException {
+    byte[] buffer = new byte[8192];
+    while (in.read(buffer) >= 0) {
+      //Discard the request body
+    }
+  }
+
+  /**
+   * Unsigned jwt expiring after ttl seconds, which is all the client reads.
+   */
+  static String jwt(long ttlS) {
+    Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    String header = encoder.encodeToString("{\"alg\":\"none\"}".getBytes(StandardCharsets.UTF_8));
+    String claims = encoder.encodeToString(new JSONObject().put("sub", "loadtest")
+      .put("exp", System.currentTimeMillis() / 1000 + ttlS).toString().getBytes(StandardCharsets.UTF_8));
+    return header + "." + claims + ".";
+  }
+
+  /**
+   * Create the keystore of the stub and the truststore of the clients with keytool.
+   *
+   * @param dir directory of the stores
+   * @return the keystore, the truststore is dir/truststore.jks
+   * @throws IOException IOException
+   * @throws InterruptedException InterruptedException
+   */
+  static Path createStores(Path dir) throws IOException, InterruptedException {
+    Path keystore = dir.resolve("stub.p12");
+    Path certificate = dir.resolve("stub.crt");
+    Path truststore = dir.resolve("truststore.jks");
+    Files.deleteIfExists(keystore);
+    Files.deleteIfExists(truststore);
+    keytool("-genkeypair", "-alias", "stub", "-keyalg", "RSA", "-keysize", "2048", "-validity", "2",
+      "-dname", "CN=localhost", "-ext", "SAN=dns:localhost,ip:127.0.0.1", "-storetype", "PKCS12",
+      "-keystore", keystore.toString(), "-storepass", STORE_PASSWORD, "-keypass", STORE_PASSWORD);
+    keytool("-exportcert", "-alias", "stub", "-keystore", keystore.toString(), "-storetype", "PKCS12",
+      "-storepass", STORE_PASSWORD, "-file", certificate.toString());
+    keytool("-importcert", "-noprompt", "-alias", "stub", "-file", certificate.toString(), "-storetype", "JKS",
+      "-keystore", truststore.toString(), "-storepass", STORE_PASSWORD);
+    return keystore;
+  }
+
+  private static void keytool(String... args) throws IOException, InterruptedException {
+    String[] command = new String[args.length + 1];
+    command[0] = Paths.get(System.getProperty("java.home"), "bin", "keytool").toString();
+    System.arraycopy(args, 0, command, 1, args.length);
+    Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+    drain(process.getInputStream());
+    if (process.waitFor() != 0) {
+      throw new IOException("keytool " + args[0] + " failed with exit code " + process.exitValue());
+    }
+  }
+}
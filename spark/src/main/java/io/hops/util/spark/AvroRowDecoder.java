@@ -0,0 +1,325 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util.spark;
+
+import org.apache.avro.LogicalType;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.spark.sql.catalyst.expressions.GenericInternalRow;
+import org.apache.spark.sql.catalyst.expressions.UnsafeProjection;
+import org.apache.spark.sql.catalyst.expressions.UnsafeRow;
+import org.apache.spark.sql.catalyst.util.ArrayBasedMapData;
+import org.apache.spark.sql.catalyst.util.GenericArrayData;
+import org.apache.spark.sql.types.DataType;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.Decimal;
+import org.apache.spark.sql.types.StructField;
+import org.apache.spark.sql.types.StructType;
+import org.apache.spark.unsafe.types.UTF8String;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes single Avro binary records into Spark's internal row format, without building an Avro GenericRecord for
+ * every message, e.g. in mapPartitions or a custom sink. Whole DataFrame columns are decoded by
+ * {@link SparkUtils#decodeAvro(org.apache.spark.sql.Dataset, String, Schema)} within the query plan instead.
+ * <p>
+ * A tree of field readers is compiled once per schema, each reading its field from the decoder and producing the
+ * Catalyst value for it. Records become {@link UnsafeRow}s through a projection that, like the rows of Spark's own
+ * sources, is reused between calls. Unions of null and one type become nullable fields and other unions become a
+ * struct with one field per member, as in spark-avro.
+ */
+public class AvroRowDecoder implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final String schemaJson;
+  private final StructType sparkSchema;
+
+  private transient FieldReader[] readers;
+  private transient GenericInternalRow row;
+  private transient UnsafeProjection projection;
+  private transient BinaryDecoder decoder;
+
+  /**
+   * @param schema Avro schema of type record.
+   */
+  public AvroRowDecoder(Schema schema) {
+    if (schema.getType() != Schema.Type.RECORD) {
+      throw new IllegalArgumentException("Only record schemas can be decoded to rows, got " + schema.getType());
+    }
+    this.schemaJson = schema.toString();
+    this.sparkSchema = (StructType) toSparkType(schema);
+  }
+
+  /**
+   * @return the Spark schema of the decoded rows.
+   */
+  public StructType getSparkSchema() {
+    return sparkSchema;
+  }
+
+  /**
+   * Decode a record. The returned row is reused by the next call and must be copied if it is kept.
+   *
+   * @param bytes buffer holding the record
+   * @param offset offset of the record
+   * @param length length of the record
+   * @return the row
+   * @throws IOException if the record cannot be decoded.
+   */
+  public UnsafeRow decode(byte[] bytes, int offset, int length) throws IOException {
+    if (readers == null) {
+      Schema schema = new Schema.Parser().parse(schemaJson);
+      readers = new FieldReader[schema.getFields().size()];
+      for (int i = 0; i < readers.length; i++) {
+        readers[i] = compile(schema.getFields().get(i).schema());
+      }
+      row = new GenericInternalRow(readers.length);
+      projection = UnsafeProjection.create(sparkSchema);
+    }
+    decoder = DecoderFactory.get().binaryDecoder(bytes, offset, length, decoder);
+    for (int i = 0; i < readers.length; i++) {
+      row.update(i, readers[i].read(decoder));
+    }
+    return projection.apply(row);
+  }
+
+  /**
+   * Convert an Avro schema to the Spark type of the values produced by the decoder.
+   *
+   * @param schema Avro schema
+   * @return Spark type
+   */
+  public static DataType toSparkType(Schema schema) {
+    LogicalType logicalType = schema.getLogicalType();
+    if (logicalType instanceof LogicalTypes.Decimal) {
+      LogicalTypes.Decimal decimal = (LogicalTypes.Decimal) logicalType;
+      return DataTypes.createDecimalType(decimal.getPrecision(), decimal.getScale());
+    } else if (logicalType instanceof LogicalTypes.Date) {
+      return DataTypes.DateType;
+    } else if (logicalType instanceof LogicalTypes.TimestampMillis
+      || logicalType instanceof LogicalTypes.TimestampMicros) {
+      return DataTypes.TimestampType;
+    }
+    switch (schema.getType()) {
+      case NULL:
+        return DataTypes.NullType;
+      case BOOLEAN:
+        return DataTypes.BooleanType;
+      case INT:
+        return DataTypes.IntegerType;
+      case LONG:
+        return DataTypes.LongType;
+      case FLOAT:
+        return DataTypes.FloatType;
+      case DOUBLE:
+        return DataTypes.DoubleType;
+      case STRING:
+      case ENUM:
+        return DataTypes.StringType;
+      case BYTES:
+      case FIXED:
+        return DataTypes.BinaryType;
+      case ARRAY:
+        return DataTypes.createArrayType(toSparkType(schema.getElementType()), isNullable(schema.getElementType()));
+      case MAP:
+        return DataTypes.createMapType(DataTypes.StringType, toSparkType(schema.getValueType()),
+          isNullable(schema.getValueType()));
+      case RECORD:
+        List<StructField> fields = new ArrayList<>();
+        for (Schema.Field field : schema.getFields()) {
+          fields.add(DataTypes.createStructField(field.name(), toSparkType(field.schema()),
+            isNullable(field.schema())));
+        }
+        return DataTypes.createStructType(fields);
+      case UNION:
+        List<Schema> members = nonNullMembers(schema);
+        if (members.size() == 1) {
+          return toSparkType(members.get(0));
+        }
+        List<StructField> memberFields = new ArrayList<>();
+        for (int i = 0; i < members.size(); i++) {
+          memberFields.add(DataTypes.createStructField("member" + i, toSparkType(members.get(i)), true));
+        }
+        return DataTypes.createStructType(memberFields);
+      default:
+        throw new IllegalArgumentException("Unsupported Avro type " + schema.getType());
+    }
+  }
+
+  private static boolean isNullable(Schema schema) {
+    if (schema.getType() == Schema.Type.NULL) {
+      return true;
+    }
+    if (schema.getType() == Schema.Type.UNION) {
+      for (Schema member : schema.getTypes()) {
+        if (member.getType() == Schema.Type.NULL) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static List<Schema> nonNullMembers(Schema union) {
+    List<Schema> members = new ArrayList<>();
+    for (Schema member : union.getTypes()) {
+      if (member.getType() != Schema.Type.NULL) {
+        members.add(member);
+      }
+    }
+    return members;
+  }
+
+  /**
+   * Reads one value of a schema and returns it as a Catalyst value.
+   */
+  @FunctionalInterface
+  private interface FieldReader {
+    Object read(BinaryDecoder in) throws IOException;
+  }
+
+  private static FieldReader compile(Schema schema) {
+    LogicalType logicalType = schema.getLogicalType();
+    if (logicalType instanceof LogicalTypes.Decimal) {
+      int precision = ((LogicalTypes.Decimal) logicalType).getPrecision();
+      int scale = ((LogicalTypes.Decimal) logicalType).getScale();
+      if (schema.getType() == Schema.Type.FIXED) {
+        byte[] buffer = new byte[schema.getFixedSize()];
+        return in -> {
+          in.readFixed(buffer);
+          return Decimal.apply(new BigDecimal(new BigInteger(buffer), scale), precision, scale);
+        };
+      }
+      return in -> Decimal.apply(new BigDecimal(new BigInteger(readBytes(in)), scale), precision, scale);
+    } else if (logicalType instanceof LogicalTypes.TimestampMillis) {
+      return in -> in.readLong() * 1000;
+    }
+    //Dates are days and timestamp-micros are microseconds since the epoch in both Avro and Spark
+    switch (schema.getType()) {
+      case NULL:
+        return in -> {
+          in.readNull();
+          return null;
+        };
+      case BOOLEAN:
+        return BinaryDecoder::readBoolean;
+      case INT:
+        return BinaryDecoder::readInt;
+      case LONG:
+        return BinaryDecoder::readLong;
+      case FLOAT:
+        return BinaryDecoder::readFloat;
+      case DOUBLE:
+        return BinaryDecoder::readDouble;
+      case STRING:
+        return in -> UTF8String.fromBytes(readBytes(in));
+      case ENUM:
+        UTF8String[] symbols = new UTF8String[schema.getEnumSymbols().size()];
+        for (int i = 0; i < symbols.length; i++) {
+          symbols[i] = UTF8String.fromString(schema.getEnumSymbols().get(i));
+        }
+        return in -> symbols[in.readEnum()];
+      case BYTES:
+        return AvroRowDecoder::readBytes;
+      case FIXED:
+        int size = schema.getFixedSize();
+        return in -> {
+          byte[] fixed = new byte[size];
+          in.readFixed(fixed);
+          return fixed;
+        };
+      case ARRAY:
+        FieldReader element = compile(schema.getElementType());
+        return in -> {
+          List<Object> values = new ArrayList<>();
+          for (long n = in.readArrayStart(); n > 0; n = in.arrayNext()) {
+            for (long i = 0; i < n; i++) {
+              values.add(element.read(in));
+            }
+          }
+          return new GenericArrayData(values.toArray());
+        };
+      case MAP:
+        FieldReader value = compile(schema.getValueType());
+        return in -> {
+          List<Object> keys = new ArrayList<>();
+          List<Object> values = new ArrayList<>();
+          for (long n = in.readMapStart(); n > 0; n = in.mapNext()) {
+            for (long i = 0; i < n; i++) {
+              keys.add(UTF8String.fromBytes(readBytes(in)));
+              values.add(value.read(in));
+            }
+          }
+          return new ArrayBasedMapData(new GenericArrayData(keys.toArray()), new GenericArrayData(values.toArray()));
+        };
+      case RECORD:
+        FieldReader[] fields = new FieldReader[schema.getFields().size()];
+        for (int i = 0; i < fields.length; i++) {
+          fields[i] = compile(schema.getFields().get(i).schema());
+        }
+        return in -> {
+          Object[] values = new Object[fields.length];
+          for (int i = 0; i < fields.length; i++) {
+            values[i] = fields[i].read(in);
+          }
+          return new GenericInternalRow(values);
+        };
+      case UNION:
+        return compileUnion(schema);
+      default:
+        throw new IllegalArgumentException("Unsupported Avro type " + schema.getType());
+    }
+  }
+
+  private static FieldReader compileUnion(Schema union) {
+    List<Schema> types = union.getTypes();
+    int members = nonNullMembers(union).size();
+    //Branch index to reader and, for unions of several types, to the position in the member struct
+    FieldReader[] branches = new FieldReader[types.size()];
+    int[] positions = new int[types.size()];
+    int position = 0;
+    for (int i = 0; i < types.size(); i++) {
+      branches[i] = compile(types.get(i));
+      positions[i] = types.get(i).getType() == Schema.Type.NULL ? -1 : position++;
+    }
+    if (members <= 1) {
+      return in -> branches[in.readIndex()].read(in);
+    }
+    return in -> {
+      int branch = in.readIndex();
+      Object value = branches[branch].read(in);
+      if (positions[branch] < 0) {
+        return null;
+      }
+      Object[] values = new Object[members];
+      values[positions[branch]] = value;
+      return new GenericInternalRow(values);
+    };
+  }
+
+  private static byte[] readBytes(BinaryDecoder in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFixed(bytes);
+    return bytes;
+  }
+}
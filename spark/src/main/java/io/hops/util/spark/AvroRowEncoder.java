@@ -0,0 +1,332 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util.spark;
+
+import org.apache.avro.LogicalType;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.spark.sql.catalyst.InternalRow;
+import org.apache.spark.sql.catalyst.expressions.SpecializedGetters;
+import org.apache.spark.sql.catalyst.util.ArrayData;
+import org.apache.spark.sql.catalyst.util.MapData;
+import org.apache.spark.sql.types.ArrayType;
+import org.apache.spark.sql.types.DataType;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.DecimalType;
+import org.apache.spark.sql.types.MapType;
+import org.apache.spark.sql.types.StructField;
+import org.apache.spark.sql.types.StructType;
+import org.apache.spark.unsafe.types.UTF8String;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes Spark internal rows as Avro binary records, the counterpart of {@link AvroRowDecoder}.
+ * <p>
+ * A tree of field writers is compiled once per pair of Avro and Spark schemas, matching fields by name, and writes
+ * the values of the row straight to a reused {@link BinaryEncoder} and output buffer. Only the encoded bytes are
+ * allocated per row.
+ */
+public class AvroRowEncoder implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final String schemaJson;
+  private final StructType sparkSchema;
+
+  private transient FieldWriter writer;
+  private transient ByteArrayOutputStream buffer;
+  private transient BinaryEncoder encoder;
+
+  /**
+   * @param schema Avro record schema of the encoded records.
+   * @param sparkSchema schema of the rows, with a column for every field of the Avro schema.
+   */
+  public AvroRowEncoder(Schema schema, StructType sparkSchema) {
+    this.schemaJson = schema.toString();
+    this.sparkSchema = sparkSchema;
+    //Fail on the driver for incompatible schemas instead of in every task
+    compileRecord(schema, sparkSchema);
+  }
+
+  /**
+   * Encode a row.
+   *
+   * @param row row with the Spark schema of the encoder.
+   * @return the Avro binary record.
+   * @throws IOException if the row cannot be encoded.
+   */
+  public byte[] encode(InternalRow row) throws IOException {
+    if (writer == null) {
+      writer = compileRecord(new Schema.Parser().parse(schemaJson), sparkSchema);
+      buffer = new ByteArrayOutputStream(1024);
+    }
+    buffer.reset();
+    encoder = EncoderFactory.get().binaryEncoder(buffer, encoder);
+    writer.write(row, -1, encoder);
+    encoder.flush();
+    return buffer.toByteArray();
+  }
+
+  /**
+   * Writes a value of a row or array, or with ordinal -1 the row itself, to the encoder.
+   */
+  @FunctionalInterface
+  private interface FieldWriter {
+    void write(SpecializedGetters data, int ordinal, BinaryEncoder out) throws IOException;
+  }
+
+  private static FieldWriter compileRecord(Schema schema, StructType struct) {
+    if (schema.getType() != Schema.Type.RECORD) {
+      throw new IllegalArgumentException("Only record schemas can be encoded from rows, got " + schema.getType());
+    }
+    List<Schema.Field> fields = schema.getFields();
+    int numFields = struct.fields().length;
+    int[] ordinals = new int[fields.size()];
+    FieldWriter[] writers = new FieldWriter[fields.size()];
+    for (int i = 0; i < writers.length; i++) {
+      Schema.Field field = fields.get(i);
+      if (!Arrays.asList(struct.fieldNames()).contains(field.name())) {
+        throw new IllegalArgumentException("No column for Avro field " + field.name());
+      }
+      ordinals[i] = struct.fieldIndex(field.name());
+      StructField column = struct.fields()[ordinals[i]];
+      writers[i] = compile(field.schema(), column.dataType(), column.nullable(), field.name());
+    }
+    return (data, ordinal, out) -> {
+      InternalRow row = ordinal < 0 ? (InternalRow) data : data.getStruct(ordinal, numFields);
+      for (int i = 0; i < writers.length; i++) {
+        writers[i].write(row, ordinals[i], out);
+      }
+    };
+  }
+
+  /**
+   * Compiles the writer of a value that may be null in Spark. Only unions with null can encode null values, for other
+   * types the writer fails with a clear error instead of writing the zero a null slot holds.
+   */
+  private static FieldWriter compile(Schema schema, DataType type, boolean nullable, String name) {
+    FieldWriter writer = compile(schema, type, name);
+    if (!nullable || schema.getType() == Schema.Type.UNION || schema.getType() == Schema.Type.NULL) {
+      return writer;
+    }
+    return (data, ordinal, out) -> {
+      if (data.isNullAt(ordinal)) {
+        throw new IOException("Null value for non-nullable field " + name);
+      }
+      writer.write(data, ordinal, out);
+    };
+  }
+
+  private static FieldWriter compile(Schema schema, DataType type, String name) {
+    LogicalType logicalType = schema.getLogicalType();
+    if (logicalType instanceof LogicalTypes.Decimal && type instanceof DecimalType) {
+      int precision = ((DecimalType) type).precision();
+      int scale = ((DecimalType) type).scale();
+      int avroScale = ((LogicalTypes.Decimal) logicalType).getScale();
+      int fixedSize = schema.getType() == Schema.Type.FIXED ? schema.getFixedSize() : -1;
+      return (data, ordinal, out) -> {
+        byte[] unscaled = data.getDecimal(ordinal, precision, scale).toJavaBigDecimal().setScale(avroScale)
+          .unscaledValue().toByteArray();
+        if (fixedSize < 0) {
+          out.writeBytes(unscaled);
+        } else {
+          //Sign extend to the size of the fixed type
+          byte[] fixed = new byte[fixedSize];
+          Arrays.fill(fixed, 0, fixedSize - unscaled.length, (byte) (unscaled[0] < 0 ? 0xFF : 0));
+          System.arraycopy(unscaled, 0, fixed, fixedSize - unscaled.length, unscaled.length);
+          out.writeFixed(fixed);
+        }
+      };
+    } else if (logicalType instanceof LogicalTypes.TimestampMillis && type == DataTypes.TimestampType) {
+      return (data, ordinal, out) -> out.writeLong(data.getLong(ordinal) / 1000);
+    }
+    switch (schema.getType()) {
+      case NULL:
+        return (data, ordinal, out) -> out.writeNull();
+      case BOOLEAN:
+        requireType(name, schema, type, DataTypes.BooleanType);
+        return (data, ordinal, out) -> out.writeBoolean(data.getBoolean(ordinal));
+      case INT:
+        requireType(name, schema, type, DataTypes.IntegerType, DataTypes.ShortType, DataTypes.ByteType,
+          DataTypes.DateType);
+        if (type == DataTypes.ShortType) {
+          return (data, ordinal, out) -> out.writeInt(data.getShort(ordinal));
+        } else if (type == DataTypes.ByteType) {
+          return (data, ordinal, out) -> out.writeInt(data.getByte(ordinal));
+        }
+        return (data, ordinal, out) -> out.writeInt(data.getInt(ordinal));
+      case LONG:
+        //Timestamps are microseconds in Spark as in timestamp-micros
+        requireType(name, schema, type, DataTypes.LongType, DataTypes.IntegerType, DataTypes.TimestampType);
+        if (type == DataTypes.IntegerType) {
+          return (data, ordinal, out) -> out.writeLong(data.getInt(ordinal));
+        }
+        return (data, ordinal, out) -> out.writeLong(data.getLong(ordinal));
+      case FLOAT:
+        requireType(name, schema, type, DataTypes.FloatType);
+        return (data, ordinal, out) -> out.writeFloat(data.getFloat(ordinal));
+      case DOUBLE:
+        requireType(name, schema, type, DataTypes.DoubleType, DataTypes.FloatType);
+        if (type == DataTypes.FloatType) {
+          return (data, ordinal, out) -> out.writeDouble(data.getFloat(ordinal));
+        }
+        return (data, ordinal, out) -> out.writeDouble(data.getDouble(ordinal));
+      case STRING:
+        requireType(name, schema, type, DataTypes.StringType);
+        return (data, ordinal, out) -> out.writeBytes(data.getUTF8String(ordinal).getBytes());
+      case ENUM:
+        requireType(name, schema, type, DataTypes.StringType);
+        Map<UTF8String, Integer> symbols = new HashMap<>();
+        for (String symbol : schema.getEnumSymbols()) {
+          symbols.put(UTF8String.fromString(symbol), symbols.size());
+        }
+        return (data, ordinal, out) -> {
+          Integer index = symbols.get(data.getUTF8String(ordinal));
+          if (index == null) {
+            throw new IOException("Value " + data.getUTF8String(ordinal) + " of " + name + " is not an enum symbol");
+          }
+          out.writeEnum(index);
+        };
+      case BYTES:
+        requireType(name, schema, type, DataTypes.BinaryType);
+        return (data, ordinal, out) -> out.writeBytes(data.getBinary(ordinal));
+      case FIXED:
+        requireType(name, schema, type, DataTypes.BinaryType);
+        return (data, ordinal, out) -> out.writeFixed(data.getBinary(ordinal));
+      case ARRAY:
+        if (!(type instanceof ArrayType)) {
+          throw incompatible(name, schema, type);
+        }
+        ArrayType arrayType = (ArrayType) type;
+        FieldWriter element = compile(schema.getElementType(), arrayType.elementType(), arrayType.containsNull(), name);
+        return (data, ordinal, out) -> {
+          ArrayData array = data.getArray(ordinal);
+          out.writeArrayStart();
+          out.setItemCount(array.numElements());
+          for (int i = 0; i < array.numElements(); i++) {
+            out.startItem();
+            element.write(array, i, out);
+          }
+          out.writeArrayEnd();
+        };
+      case MAP:
+        if (!(type instanceof MapType) || ((MapType) type).keyType() != DataTypes.StringType) {
+          throw incompatible(name, schema, type);
+        }
+        MapType mapType = (MapType) type;
+        FieldWriter value = compile(schema.getValueType(), mapType.valueType(), mapType.valueContainsNull(), name);
+        return (data, ordinal, out) -> {
+          MapData map = data.getMap(ordinal);
+          ArrayData keys = map.keyArray();
+          ArrayData values = map.valueArray();
+          out.writeMapStart();
+          out.setItemCount(map.numElements());
+          for (int i = 0; i < map.numElements(); i++) {
+            out.startItem();
+            out.writeBytes(keys.getUTF8String(i).getBytes());
+            value.write(values, i, out);
+          }
+          out.writeMapEnd();
+        };
+      case RECORD:
+        if (!(type instanceof StructType)) {
+          throw incompatible(name, schema, type);
+        }
+        return compileRecord(schema, (StructType) type);
+      case UNION:
+        return compileUnion(schema, type, name);
+      default:
+        throw incompatible(name, schema, type);
+    }
+  }
+
+  /**
+   * Unions of null and one type take nullable values, other unions a struct with one field per non-null member of
+   * which the first non-null one is written, as produced by {@link AvroRowDecoder}.
+   */
+  private static FieldWriter compileUnion(Schema union, DataType type, String name) {
+    List<Schema> types = union.getTypes();
+    int nullBranch = -1;
+    int[] branches = new int[types.size()];
+    int members = 0;
+    for (int i = 0; i < types.size(); i++) {
+      if (types.get(i).getType() == Schema.Type.NULL) {
+        nullBranch = i;
+      } else {
+        branches[members++] = i;
+      }
+    }
+    int nullIndex = nullBranch;
+    if (members == 1) {
+      int branch = branches[0];
+      FieldWriter writer = compile(types.get(branch), type, name);
+      return (data, ordinal, out) -> {
+        if (data.isNullAt(ordinal)) {
+          writeNull(nullIndex, name, out);
+        } else {
+          out.writeIndex(branch);
+          writer.write(data, ordinal, out);
+        }
+      };
+    }
+    if (!(type instanceof StructType) || ((StructType) type).fields().length != members) {
+      throw incompatible(name, union, type);
+    }
+    StructField[] fields = ((StructType) type).fields();
+    FieldWriter[] writers = new FieldWriter[members];
+    for (int i = 0; i < members; i++) {
+      writers[i] = compile(types.get(branches[i]), fields[i].dataType(), name);
+    }
+    int numMembers = members;
+    return (data, ordinal, out) -> {
+      InternalRow struct = data.isNullAt(ordinal) ? null : data.getStruct(ordinal, numMembers);
+      for (int i = 0; struct != null && i < numMembers; i++) {
+        if (!struct.isNullAt(i)) {
+          out.writeIndex(branches[i]);
+          writers[i].write(struct, i, out);
+          return;
+        }
+      }
+      writeNull(nullIndex, name, out);
+    };
+  }
+
+  private static void writeNull(int nullIndex, String name, BinaryEncoder out) throws IOException {
+    if (nullIndex < 0) {
+      throw new IOException("Null value for non-nullable field " + name);
+    }
+    out.writeIndex(nullIndex);
+    out.writeNull();
+  }
+
+  private static void requireType(String name, Schema schema, DataType type, DataType... accepted) {
+    if (!Arrays.asList(accepted).contains(type)) {
+      throw incompatible(name, schema, type);
+    }
+  }
+
+  private static IllegalArgumentException incompatible(String name, Schema schema, DataType type) {
+    return new IllegalArgumentException("Cannot encode " + name + " of type " + type.simpleString() + " as Avro "
+      + schema.getType());
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util.spark;
+
+/**
+ * Table driven CRC32C (Castagnoli) checksum as required by the TFRecord framing.
+ * java.util.zip.CRC32C is only available from Java 9 onwards.
+ */
+final class Crc32c {
+
+  private static final int POLY = 0x82F63B78;
+  private static final int MASK_DELTA = 0xa282ead8;
+  private static final int[] TABLE = new int[256];
+
+  static {
+    for (int n = 0; n < 256; n++) {
+      int c = n;
+      for (int k = 0; k < 8; k++) {
+        c = (c & 1) != 0 ? (c >>> 1) ^ POLY : c >>> 1;
+      }
+      TABLE[n] = c;
+    }
+  }
+
+  private Crc32c() {
+  }
+
+  static int compute(byte[] data, int offset, int length) {
+    int crc = 0xFFFFFFFF;
+    for (int i = offset; i < offset + length; i++) {
+      crc = TABLE[(crc ^ data[i]) & 0xFF] ^ (crc >>> 8);
+    }
+    return ~crc;
+  }
+
+  /**
+   * Masked crc as defined by the TFRecord format, so that checksums of data containing embedded crcs are stable.
+   *
+   * @param data data
+   * @param offset offset
+   * @param length length
+   * @return masked crc
+   */
+  static int masked(byte[] data, int offset, int length) {
+    int crc = compute(data, offset, length);
+    return ((crc >>> 15) | (crc << 17)) + MASK_DELTA;
+  }
+}
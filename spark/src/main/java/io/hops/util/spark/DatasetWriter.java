@@ -0,0 +1,261 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util.spark;
+
+import io.hops.util.Constants;
+import io.hops.util.exceptions.DataframeWriteException;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.DataFrameWriter;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.functions;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes DataFrames to project datasets as CSV, Parquet or ORC with output files close to a target size.
+ * <p>
+ * The number of files is derived from the plan size estimate, scaled by the expected compression ratio of the
+ * format, and the DataFrame is repartitioned accordingly. For partitioned layouts the rows of a partition value are
+ * written by a single task and split into files of about the target size. The split uses a record count derived from
+ * the default size of the schema, so file sizes are only approximate for variable-width columns such as strings,
+ * arrays and maps. The schema is stored next to the data so that
+ * {@link SparkUtils#read} can load the dataset without an inference pass.
+ *
+ * <pre>
+ * DatasetWriter.builder().setDataframe(df).setPath("Resources/sales").setFormat(DatasetWriter.PARQUET)
+ *   .setPartitionBy("country").write();
+ * </pre>
+ */
+public class DatasetWriter {
+
+  private static final Logger LOG = Logger.getLogger(DatasetWriter.class.getName());
+
+  public static final String CSV = "csv";
+  public static final String PARQUET = "parquet";
+  public static final String ORC = "orc";
+  public static final long DEFAULT_TARGET_FILE_SIZE_BYTES = 128L * 1024 * 1024;
+
+  private static final Map<String, Double> COMPRESSION_RATIOS = new HashMap<>();
+
+  static {
+    //Rough on-disk to in-memory size ratios, only used to derive the number of files
+    COMPRESSION_RATIOS.put(CSV, 1.0);
+    COMPRESSION_RATIOS.put(PARQUET, 0.3);
+    COMPRESSION_RATIOS.put(ORC, 0.3);
+  }
+
+  private Dataset<Row> dataframe;
+  private String path;
+  private String table;
+  private String format = PARQUET;
+  private String mode = Constants.SPARK_OVERWRITE_MODE;
+  private String delimiter = ",";
+  private boolean header = true;
+  private String[] partitionBy = new String[0];
+  private String[] bucketBy = new String[0];
+  private int numBuckets;
+  private int numFiles;
+  private long targetFileSizeBytes = DEFAULT_TARGET_FILE_SIZE_BYTES;
+  private Double compressionRatio;
+  private boolean storeSchema = true;
+  private final Map<String, String> options = new HashMap<>();
+
+  private DatasetWriter() {
+  }
+
+  public static DatasetWriter builder() {
+    return new DatasetWriter();
+  }
+
+  /**
+   * Write the DataFrame.
+   *
+   * @throws DataframeWriteException DataframeWriteException
+   */
+  public void write() throws DataframeWriteException {
+    if (dataframe == null || (path == null && table == null)) {
+      throw new IllegalArgumentException("Dataframe and path or table must be provided.");
+    }
+    if (numBuckets > 0 && table == null) {
+      throw new IllegalArgumentException("Bucketed layouts can only be written as tables.");
+    }
+    double ratio = compressionRatio != null ? compressionRatio : COMPRESSION_RATIOS.getOrDefault(format, 1.0);
+    int files = getNumFiles(ratio);
+
+    Dataset<Row> repartitioned;
+    if (partitionBy.length > 0) {
+      //One task per partition value avoids every task writing a small file into every partition directory,
+      //maxRecordsPerFile below splits large partition values into several files
+      repartitioned = dataframe.repartition(files, Arrays.stream(partitionBy).map(functions::col)
+        .toArray(Column[]::new));
+    } else if (dataframe.rdd().getNumPartitions() > files) {
+      repartitioned = dataframe.coalesce(files);
+    } else if (dataframe.rdd().getNumPartitions() < files) {
+      repartitioned = dataframe.repartition(files);
+    } else {
+      repartitioned = dataframe;
+    }
+
+    DataFrameWriter<Row> writer = repartitioned.write().format(format).mode(mode).options(options);
+    if (CSV.equals(format)) {
+      writer = writer.option(Constants.SPARK_WRITE_DELIMITER, delimiter)
+        .option(Constants.SPARK_WRITE_HEADER, String.valueOf(header));
+    }
+    //Approximate, defaultSize assumes a fixed width for strings, binaries and collections
+    long rowSize = Math.max(1, (long) (dataframe.schema().defaultSize() * ratio));
+    writer = writer.option("maxRecordsPerFile", Math.max(1, targetFileSizeBytes / rowSize));
+    if (partitionBy.length > 0) {
+      writer = writer.partitionBy(partitionBy);
+    }
+    if (numBuckets > 0) {
+      writer = writer.bucketBy(numBuckets, bucketBy[0], Arrays.copyOfRange(bucketBy, 1, bucketBy.length))
+        .sortBy(bucketBy[0], Arrays.copyOfRange(bucketBy, 1, bucketBy.length));
+    }
+    LOG.log(Level.FINE, "Writing {0} dataframe in {1} files", new Object[]{format, files});
+
+    try {
+      if (table != null) {
+        if (path != null) {
+          writer = writer.option("path", SparkUtils.getProjectPath(path));
+        }
+        writer.saveAsTable(table);
+      } else {
+        String resolved = SparkUtils.getProjectPath(path);
+        writer.save(resolved);
+        if (storeSchema) {
+          SparkUtils.putSchema(resolved, dataframe.schema());
+        }
+      }
+    } catch (IOException e) {
+      throw new DataframeWriteException("Could not store schema of " + path, e);
+    } catch (Exception e) {
+      throw new DataframeWriteException("Could not write dataframe to " + (table != null ? table : path), e);
+    }
+  }
+
+  /**
+   * Number of files the write will produce per output directory.
+   *
+   * @param ratio on-disk to in-memory size ratio.
+   * @return number of files.
+   */
+  private int getNumFiles(double ratio) {
+    if (numFiles > 0) {
+      return numFiles;
+    }
+    long size = (long) (SparkUtils.estimateSizeInBytes(dataframe) * ratio);
+    return (int) Math.max(1, Math.min(Integer.MAX_VALUE, (size + targetFileSizeBytes - 1) / targetFileSizeBytes));
+  }
+
+  public DatasetWriter setDataframe(Dataset<Row> dataframe) {
+    this.dataframe = dataframe;
+    return this;
+  }
+
+  /**
+   * Output path, relative to the project root directory or absolute.
+   *
+   * @param path path
+   * @return this writer
+   */
+  public DatasetWriter setPath(String path) {
+    this.path = path;
+    return this;
+  }
+
+  /**
+   * Write as a metastore table instead of plain files. Required for bucketed layouts.
+   *
+   * @param table table name
+   * @return this writer
+   */
+  public DatasetWriter setTable(String table) {
+    this.table = table;
+    return this;
+  }
+
+  public DatasetWriter setFormat(String format) {
+    this.format = format;
+    return this;
+  }
+
+  public DatasetWriter setMode(String mode) {
+    this.mode = mode;
+    return this;
+  }
+
+  public DatasetWriter setDelimiter(String delimiter) {
+    this.delimiter = delimiter;
+    return this;
+  }
+
+  public DatasetWriter setHeader(boolean header) {
+    this.header = header;
+    return this;
+  }
+
+  public DatasetWriter setPartitionBy(String... partitionBy) {
+    this.partitionBy = partitionBy;
+    return this;
+  }
+
+  public DatasetWriter setBucketBy(int numBuckets, String... bucketBy) {
+    if (numBuckets <= 0 || bucketBy.length == 0) {
+      throw new IllegalArgumentException("Number of buckets and bucket columns must be provided.");
+    }
+    this.numBuckets = numBuckets;
+    this.bucketBy = bucketBy;
+    return this;
+  }
+
+  public DatasetWriter setNumFiles(int numFiles) {
+    this.numFiles = numFiles;
+    return this;
+  }
+
+  public DatasetWriter setTargetFileSizeBytes(long targetFileSizeBytes) {
+    if (targetFileSizeBytes <= 0) {
+      throw new IllegalArgumentException("Target file size must be positive.");
+    }
+    this.targetFileSizeBytes = targetFileSizeBytes;
+    return this;
+  }
+
+  /**
+   * Override the on-disk to in-memory size ratio used to estimate the number of files.
+   *
+   * @param compressionRatio ratio, e.g. 0.3 for Parquet.
+   * @return this writer
+   */
+  public DatasetWriter setCompressionRatio(double compressionRatio) {
+    this.compressionRatio = compressionRatio;
+    return this;
+  }
+
+  public DatasetWriter setStoreSchema(boolean storeSchema) {
+    this.storeSchema = storeSchema;
+    return this;
+  }
+
+  public DatasetWriter setOption(String key, String value) {
+    options.put(key, value);
+    return this;
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util.spark;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import io.hops.util.HopsClientMetrics;
+import org.apache.spark.SparkContext;
+import org.apache.spark.TaskFailedReason;
+import org.apache.spark.api.plugin.DriverPlugin;
+import org.apache.spark.api.plugin.ExecutorPlugin;
+import org.apache.spark.api.plugin.PluginContext;
+import org.apache.spark.api.plugin.SparkPlugin;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Spark plugin publishing the {@link HopsClientMetrics} of the driver and executors, enabled with
+ * spark.plugins=io.hops.util.spark.HopsMetricsPlugin.
+ * <p>
+ * Every JVM registers its counters as gauges in the Spark metrics system, in the namespace of the plugin. Executors
+ * send their counters to the driver when tasks end, at most every {@value #REPORT_INTERVAL_MS} ms, and on shutdown.
+ * The driver registers a {@link HopsSparkListener} that adds them up.
+ */
+public class HopsMetricsPlugin implements SparkPlugin {
+
+  private static final Logger LOG = Logger.getLogger(HopsMetricsPlugin.class.getName());
+
+  static final long REPORT_INTERVAL_MS = 10000;
+
+  @Override
+  public DriverPlugin driverPlugin() {
+    return new Driver();
+  }
+
+  @Override
+  public ExecutorPlugin executorPlugin() {
+    return new Executor();
+  }
+
+  private static void registerGauges(MetricRegistry registry, Supplier<HopsClientMetrics.Snapshot> metrics) {
+    registry.register("restCalls", (Gauge<Long>) () -> metrics.get().getRestCalls());
+    registry.register("restErrors", (Gauge<Long>) () -> metrics.get().getRestErrors());
+    registry.register("restThrottled", (Gauge<Long>) () -> metrics.get().getRestThrottled());
+    registry.register("restLatencyMs", (Gauge<Long>) () -> metrics.get().getRestLatencyMs());
+    registry.register("restMaxLatencyMs", (Gauge<Long>) () -> metrics.get().getRestMaxLatencyMs());
+    registry.register("cacheHits", (Gauge<Long>) () -> metrics.get().getCacheHits());
+    registry.register("cacheMisses", (Gauge<Long>) () -> metrics.get().getCacheMisses());
+    registry.register("credentialRefreshes", (Gauge<Long>) () -> metrics.get().getCredentialRefreshes());
+    registry.register("setupMs", (Gauge<Long>) () -> metrics.get().getSetupMs());
+  }
+
+  /**
+   * Metrics of one executor, sent to the driver.
+   */
+  static final class Report implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String executorId;
+    private final HopsClientMetrics.Snapshot snapshot;
+
+    Report(String executorId, HopsClientMetrics.Snapshot snapshot) {
+      this.executorId = executorId;
+      this.snapshot = snapshot;
+    }
+  }
+
+  private static final class Driver implements DriverPlugin {
+
+    @Override
+    public Map<String, String> init(SparkContext sc, PluginContext pluginContext) {
+      sc.addSparkListener(new HopsSparkListener());
+      return Collections.emptyMap();
+    }
+
+    @Override
+    public void registerMetrics(String appId, PluginContext pluginContext) {
+      //Totals of the application, the driver JVM alone is HopsClientMetrics.snapshot()
+      registerGauges(pluginContext.metricRegistry(), HopsSparkListener::getTotal);
+    }
+
+    @Override
+    public Object receive(Object message) {
+      if (message instanceof Report) {
+        Report report = (Report) message;
+        HopsSparkListener.update(report.executorId, report.snapshot);
+      }
+      return null;
+    }
+  }
+
+  private static final class Executor implements ExecutorPlugin {
+
+    private PluginContext context;
+    private volatile long lastReport;
+
+    @Override
+    public void init(PluginContext ctx, Map<String, String> extraConf) {
+      this.context = ctx;
+      registerGauges(ctx.metricRegistry(), HopsClientMetrics::snapshot);
+    }
+
+    @Override
+    public void onTaskSucceeded() {
+      maybeReport();
+    }
+
+    @Override
+    public void onTaskFailed(TaskFailedReason failureReason) {
+      maybeReport();
+    }
+
+    @Override
+    public void shutdown() {
+      report();
+    }
+
+    private void maybeReport() {
+      if (System.currentTimeMillis() - lastReport >= REPORT_INTERVAL_MS) {
+        report();
+      }
+    }
+
+    private void report() {
+      lastReport = System.currentTimeMillis();
+      try {
+        context.send(new Report(context.executorID(), HopsClientMetrics.snapshot()));
+      } catch (Exception e) {
+        LOG.log(Level.FINE, "Could not send Hops client metrics to the driver", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util.spark;
+
+import io.hops.util.HopsClientMetrics;
+import org.apache.spark.scheduler.SparkListener;
+import org.apache.spark.scheduler.SparkListenerApplicationEnd;
+import org.apache.spark.scheduler.SparkListenerStageCompleted;
+import org.apache.spark.scheduler.SparkListenerTaskEnd;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reports on the driver how much the job waited on Hopsworks, from the {@link HopsClientMetrics} of the driver and
+ * of the executors, which are sent by {@link HopsMetricsPlugin}. The totals are logged when a stage completes and
+ * when the application ends, together with the share of task time spent in Hopsworks requests.
+ * <p>
+ * The listener is registered by the plugin, or on its own with spark.extraListeners to report the driver only.
+ */
+public class HopsSparkListener extends SparkListener {
+
+  private static final Logger LOG = Logger.getLogger(HopsSparkListener.class.getName());
+
+  private static final Map<String, HopsClientMetrics.Snapshot> EXECUTORS = new ConcurrentHashMap<>();
+
+  private final LongAdder taskRunTimeMs = new LongAdder();
+
+  /**
+   * Record the latest metrics of an executor.
+   *
+   * @param executorId executor ID
+   * @param snapshot cumulative metrics of the executor
+   */
+  static void update(String executorId, HopsClientMetrics.Snapshot snapshot) {
+    EXECUTORS.put(executorId, snapshot);
+  }
+
+  /**
+   * @return the metrics of the driver and all executors that reported so far.
+   */
+  public static HopsClientMetrics.Snapshot getTotal() {
+    HopsClientMetrics.Snapshot total = HopsClientMetrics.snapshot();
+    for (HopsClientMetrics.Snapshot executor : EXECUTORS.values()) {
+      total = total.plus(executor);
+    }
+    return total;
+  }
+
+  /**
+   * @return the latest metrics of every executor that reported, by executor ID.
+   */
+  public static Map<String, HopsClientMetrics.Snapshot> getExecutorMetrics() {
+    return new ConcurrentHashMap<>(EXECUTORS);
+  }
+
+  @Override
+  public void onTaskEnd(SparkListenerTaskEnd taskEnd) {
+    if (taskEnd.taskMetrics() != null) {
+      taskRunTimeMs.add(taskEnd.taskMetrics().executorRunTime());
+    }
+  }
+
+  @Override
+  public void onStageCompleted(SparkListenerStageCompleted stageCompleted) {
+    LOG.log(Level.INFO, "Hops client after stage {0}: {1}",
+      new Object[]{stageCompleted.stageInfo().stageId(), getTotal()});
+  }
+
+  @Override
+  public void onApplicationEnd(SparkListenerApplicationEnd applicationEnd) {
+    HopsClientMetrics.Snapshot total = getTotal();
+    long taskTime = taskRunTimeMs.sum();
+    LOG.log(Level.INFO, "Hops client for {0} executors: {1}, {2} of task time spent waiting on Hopsworks",
+      new Object[]{EXECUTORS.size(), total,
+        taskTime == 0 ? "n/a" : String.format("%.1f%%", 100.0 * total.getRestLatencyMs() / taskTime)});
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util.spark;
+
+import io.hops.util.exceptions.JWTNotFoundException;
+import io.hops.util.exceptions.SchemaNotFoundException;
+import io.hops.util.kafka.KafkaUtils;
+import org.apache.avro.Schema;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.DataFrameWriter;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.catalyst.InternalRow;
+import org.apache.spark.sql.catalyst.expressions.GenericInternalRow;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructType;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes a DataFrame to a Hopsworks Kafka topic as Avro records with the schema of the topic.
+ * <p>
+ * Each partition encodes its rows with one {@link AvroRowEncoder}, which reuses its writers, encoder and buffer, and
+ * the records are sent with the Spark Kafka sink configured with the SSL properties of the job.
+ *
+ * <pre>
+ * KafkaAvroWriter.builder().setDataframe(df).setTopic("events").setKeyColumn("user_id").write();
+ * </pre>
+ */
+public class KafkaAvroWriter {
+
+  private static final Logger LOG = Logger.getLogger(KafkaAvroWriter.class.getName());
+
+  private static final String KAFKA_FORMAT = "kafka";
+  private static final String KAFKA_OPTION_PREFIX = "kafka.";
+  private static final String KEY_COLUMN = "key";
+  private static final String VALUE_COLUMN = "value";
+  private static final String HOPS_KEY_COLUMN = "_hops_key";
+
+  private Dataset<Row> dataframe;
+  private String topic;
+  private String keyColumn;
+  private final Map<String, String> options = new HashMap<>();
+
+  private KafkaAvroWriter() {
+  }
+
+  public static KafkaAvroWriter builder() {
+    return new KafkaAvroWriter();
+  }
+
+  /**
+   * Encode the DataFrame and write it to the topic.
+   *
+   * @throws JWTNotFoundException JWTNotFoundException
+   * @throws SchemaNotFoundException SchemaNotFoundException
+   */
+  public void write() throws JWTNotFoundException, SchemaNotFoundException {
+    Dataset<Row> encoded = encode();
+    DataFrameWriter<Row> writer = encoded.write().format(KAFKA_FORMAT)
+      .option("topic", topic)
+      .option(KAFKA_OPTION_PREFIX + "bootstrap.servers", KafkaUtils.getBootstrapServers());
+    Properties sslProperties = KafkaUtils.getKafkaSSLProperties();
+    for (String property : sslProperties.stringPropertyNames()) {
+      writer = writer.option(KAFKA_OPTION_PREFIX + property, sslProperties.getProperty(property));
+    }
+    LOG.log(Level.FINE, "Writing DataFrame to Kafka topic {0}", topic);
+    writer.options(options).save();
+  }
+
+  /**
+   * Encode the rows of the DataFrame without writing them, e.g. to write them with another sink.
+   *
+   * @return DataFrame with a binary key column, null without a key column, and a binary value column.
+   * @throws JWTNotFoundException JWTNotFoundException
+   * @throws SchemaNotFoundException SchemaNotFoundException
+   */
+  public Dataset<Row> encode() throws JWTNotFoundException, SchemaNotFoundException {
+    if (dataframe == null || topic == null) {
+      throw new IllegalArgumentException("Dataframe and topic must be provided.");
+    }
+    Schema schema = KafkaUtils.getCachedSchema(topic);
+    Dataset<Row> rows = dataframe;
+    int keyOrdinal = -1;
+    if (keyColumn != null) {
+      rows = dataframe.withColumn(HOPS_KEY_COLUMN, new Column(keyColumn).cast(DataTypes.BinaryType));
+      keyOrdinal = rows.schema().fieldIndex(HOPS_KEY_COLUMN);
+    }
+    AvroRowEncoder encoder = new AvroRowEncoder(schema, rows.schema());
+    int key = keyOrdinal;
+    //Binary columns are byte arrays in internal rows too, so the records need no conversion to external rows
+    JavaRDD<InternalRow> records = rows.queryExecution().toRdd().toJavaRDD().map(row ->
+      new GenericInternalRow(new Object[]{key < 0 || row.isNullAt(key) ? null : row.getBinary(key),
+        encoder.encode(row)}));
+    StructType recordSchema = new StructType()
+      .add(KEY_COLUMN, DataTypes.BinaryType, true)
+      .add(VALUE_COLUMN, DataTypes.BinaryType, false);
+    return dataframe.sparkSession().internalCreateDataFrame(records.rdd(), recordSchema, false);
+  }
+
+  public KafkaAvroWriter setDataframe(Dataset<Row> dataframe) {
+    this.dataframe = dataframe;
+    return this;
+  }
+
+  /**
+   * @param topic Kafka topic, its schema is fetched from Hopsworks and cached for five minutes, see
+   * hopsutil.schema.cache.ttl.ms.
+   * @return builder
+   */
+  public KafkaAvroWriter setTopic(String topic) {
+    this.topic = topic;
+    return this;
+  }
+
+  /**
+   * @param keyColumn column written as the record key, cast to binary. Records have no key by default.
+   * @return builder
+   */
+  public KafkaAvroWriter setKeyColumn(String keyColumn) {
+    this.keyColumn = keyColumn;
+    return this;
+  }
+
+  /**
+   * @param key option of the Spark Kafka sink, e.g. kafka.linger.ms
+   * @param value option value
+   * @return builder
+   */
+  public KafkaAvroWriter setOption(String key, String value) {
+    options.put(key, value);
+    return this;
+  }
+}
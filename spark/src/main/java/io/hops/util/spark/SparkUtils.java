@@ -0,0 +1,264 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util.spark;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.hops.util.Constants;
+import io.hops.util.Hops;
+import io.hops.util.exceptions.JWTNotFoundException;
+import io.hops.util.exceptions.SchemaNotFoundException;
+import io.hops.util.kafka.KafkaUtils;
+import org.apache.avro.Schema;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.DataFrameReader;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.avro.functions;
+import org.apache.spark.sql.types.DataType;
+import org.apache.spark.sql.types.StructType;
+import scala.Option;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Helpers shared by the DataFrame writers and readers.
+ */
+public class SparkUtils {
+
+  private static final Logger LOG = Logger.getLogger(SparkUtils.class.getName());
+
+  /**
+   * File written next to the data by {@link DatasetWriter} so that readers do not need an inference pass.
+   */
+  public static final String SCHEMA_FILE = "_hops_schema.json";
+
+  private static final String DECODED_COLUMN = "decoded";
+
+  private static final Cache<String, StructType> SCHEMAS = CacheBuilder.newBuilder()
+    .expireAfterWrite(Long.getLong(Constants.HOPSUTIL_SCHEMA_CACHE_TTL_MS, 300000L), TimeUnit.MILLISECONDS).build();
+
+  private SparkUtils() {
+  }
+
+  /**
+   * Finds the spark session dynamically if it is not provided by the user-request. An existing session is reused
+   * with whatever catalog it was started with. Otherwise a new session is created with the catalog set by the
+   * hopsutil.spark.catalog system property, Hive by default.
+   *
+   * @return spark session
+   */
+  public static SparkSession findSpark() {
+    String catalog = System.getProperty(Constants.HOPSUTIL_SPARK_CATALOG, Constants.SPARK_SQL_CATALOG_HIVE);
+    return findSpark(Constants.SPARK_SQL_CATALOG_HIVE.equalsIgnoreCase(catalog));
+  }
+
+  /**
+   * Finds the spark session dynamically, creating it with or without Hive support if none exists yet. The catalog
+   * implementation is a static Spark configuration, so an existing session is returned unchanged.
+   * <p>
+   * Jobs that only read Kafka or write to object stores can pass false to skip the Hive metastore dependency. With
+   * Hive enabled the metastore client is only created when the catalog is first used, e.g. by the first query on a
+   * Hive table, so this method never touches the catalog itself.
+   *
+   * @param enableHiveSupport whether a new session should use the Hive catalog.
+   * @return spark session
+   */
+  public static SparkSession findSpark(boolean enableHiveSupport) {
+    Option<SparkSession> session = SparkSession.getActiveSession();
+    if (session.isEmpty()) {
+      session = SparkSession.getDefaultSession();
+    }
+    if (session.isDefined()) {
+      return session.get();
+    }
+    SparkSession.Builder builder = SparkSession.builder();
+    if (enableHiveSupport) {
+      builder = builder.enableHiveSupport();
+    } else {
+      builder = builder.config(Constants.SPARK_SQL_CATALOG_IMPLEMENTATION, Constants.SPARK_SQL_CATALOG_IN_MEMORY);
+    }
+    return builder.getOrCreate();
+  }
+
+  /**
+   * Whether the given spark session uses the Hive catalog.
+   *
+   * @param spark spark session
+   * @return true if the session was started with Hive support.
+   */
+  public static boolean isHiveEnabled(SparkSession spark) {
+    return Constants.SPARK_SQL_CATALOG_HIVE.equalsIgnoreCase(
+      spark.sparkContext().getConf().get(Constants.SPARK_SQL_CATALOG_IMPLEMENTATION,
+        Constants.SPARK_SQL_CATALOG_IN_MEMORY));
+  }
+
+  /**
+   * Get the Hadoop configuration of the spark session, looked up by the core classes when this module is on the
+   * classpath.
+   *
+   * @return hadoop configuration
+   */
+  public static Configuration getHadoopConfiguration() {
+    return findSpark().sparkContext().hadoopConfiguration();
+  }
+
+  /**
+   * Estimate the size of a DataFrame from the statistics of its optimized plan. This does not trigger a job, but the
+   * estimate is of the in-memory size and can be far off for plans without statistics.
+   *
+   * @param dataframe DataFrame
+   * @return estimated size in bytes.
+   */
+  public static long estimateSizeInBytes(Dataset<?> dataframe) {
+    scala.math.BigInt size = dataframe.queryExecution().optimizedPlan().stats().sizeInBytes();
+    return size.isValidLong() ? size.longValue() : Long.MAX_VALUE;
+  }
+
+  /**
+   * Decode the Avro values of a DataFrame read from a Kafka topic into a DataFrame with the fields of the topic schema
+   * as columns. Records with a null value, such as tombstones, are skipped.
+   * <p>
+   * Only batch DataFrames can be decoded. In Structured Streaming, call this from foreachBatch.
+   *
+   * @param dataframe DataFrame read from Kafka, with the record value in a binary value column.
+   * @param topic Kafka topic name, used to get the schema from Hopsworks.
+   * @return decoded DataFrame
+   * @throws JWTNotFoundException JWTNotFoundException
+   * @throws SchemaNotFoundException SchemaNotFoundException
+   */
+  public static Dataset<Row> decodeAvro(Dataset<Row> dataframe, String topic) throws JWTNotFoundException,
+    SchemaNotFoundException {
+    return decodeAvro(dataframe, "value", KafkaUtils.getCachedSchema(topic));
+  }
+
+  /**
+   * Decode a binary column of Avro records into a DataFrame with the fields of the schema as columns. Records are
+   * decoded with spark-avro's from_avro, which produces Catalyst rows inside the plan, so no GenericRecord or external
+   * Row is built for a message.
+   *
+   * @param dataframe DataFrame
+   * @param column name of the binary column holding the records.
+   * @param schema Avro record schema of the values.
+   * @return decoded DataFrame
+   */
+  public static Dataset<Row> decodeAvro(Dataset<Row> dataframe, String column, Schema schema) {
+    Column value = dataframe.col(column);
+    return dataframe.where(value.isNotNull())
+      .select(functions.from_avro(value, schema.toString()).as(DECODED_COLUMN))
+      .select(DECODED_COLUMN + ".*");
+  }
+
+  /**
+   * Resolve a path relative to the root directory of the current project, i.e. Projects/[projectname]/path. Absolute
+   * paths and paths with a scheme are returned unchanged.
+   *
+   * @param path dataset path, for example Resources/mydata
+   * @return absolute path.
+   */
+  public static String getProjectPath(String path) {
+    if (path.startsWith(Constants.SLASH_DELIMITER) || path.contains("://")) {
+      return path;
+    }
+    return Constants.SLASH_DELIMITER + Constants.PROJECT_ROOT_DIR + Constants.SLASH_DELIMITER + Hops.getProjectName()
+      + Constants.SLASH_DELIMITER + path;
+  }
+
+  /**
+   * Read a dataset without schema inference. The schema is taken from the in-memory cache, or from the schema file
+   * written by {@link DatasetWriter}. If neither exists the format falls back to its own schema resolution.
+   *
+   * @param format data source format, e.g. csv or parquet.
+   * @param path dataset path, relative to the project or absolute.
+   * @param options data source options, may be null.
+   * @return DataFrame
+   */
+  public static Dataset<Row> read(String format, String path, Map<String, String> options) {
+    String resolved = getProjectPath(path);
+    return read(format, resolved, getSchema(resolved), options);
+  }
+
+  /**
+   * Read a dataset with an explicit schema.
+   *
+   * @param format data source format, e.g. csv or parquet.
+   * @param path dataset path, relative to the project or absolute.
+   * @param schema schema of the dataset, may be null.
+   * @param options data source options, may be null.
+   * @return DataFrame
+   */
+  public static Dataset<Row> read(String format, String path, StructType schema, Map<String, String> options) {
+    DataFrameReader reader = findSpark().read().format(format);
+    if (options != null) {
+      reader = reader.options(options);
+    }
+    if (schema != null) {
+      reader = reader.schema(schema).option(Constants.SPARK_INFER_SCHEMA, "false");
+    }
+    return reader.load(getProjectPath(path));
+  }
+
+  /**
+   * Get the cached schema of a dataset previously written with {@link DatasetWriter}. Schemas are read again after
+   * hopsutil.schema.cache.ttl.ms, so that datasets rewritten by other jobs are picked up.
+   *
+   * @param path absolute dataset path
+   * @return schema or null if none is known.
+   */
+  public static StructType getSchema(String path) {
+    StructType schema = SCHEMAS.getIfPresent(path);
+    if (schema != null) {
+      return schema;
+    }
+    SparkSession spark = findSpark();
+    Path schemaFile = new Path(path, SCHEMA_FILE);
+    try {
+      FileSystem fs = schemaFile.getFileSystem(spark.sparkContext().hadoopConfiguration());
+      if (!fs.exists(schemaFile)) {
+        return null;
+      }
+      try (FSDataInputStream in = fs.open(schemaFile)) {
+        byte[] content = new byte[(int) fs.getFileStatus(schemaFile).getLen()];
+        in.readFully(content);
+        schema = (StructType) DataType.fromJson(new String(content, StandardCharsets.UTF_8));
+      }
+    } catch (IOException e) {
+      LOG.log(Level.WARNING, "Could not read schema of " + path, e);
+      return null;
+    }
+    SCHEMAS.put(path, schema);
+    return schema;
+  }
+
+  static void putSchema(String path, StructType schema) throws IOException {
+    SparkSession spark = findSpark();
+    Path schemaFile = new Path(path, SCHEMA_FILE);
+    FileSystem fs = schemaFile.getFileSystem(spark.sparkContext().hadoopConfiguration());
+    try (FSDataOutputStream out = fs.create(schemaFile, true)) {
+      out.write(schema.json().getBytes(StandardCharsets.UTF_8));
+    }
+    SCHEMAS.put(path, schema);
+  }
+}
@@ -0,0 +1,280 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util.spark;
+
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.types.ArrayType;
+import org.apache.spark.sql.types.BinaryType;
+import org.apache.spark.sql.types.BooleanType;
+import org.apache.spark.sql.types.ByteType;
+import org.apache.spark.sql.types.DataType;
+import org.apache.spark.sql.types.DecimalType;
+import org.apache.spark.sql.types.DoubleType;
+import org.apache.spark.sql.types.FloatType;
+import org.apache.spark.sql.types.IntegerType;
+import org.apache.spark.sql.types.LongType;
+import org.apache.spark.sql.types.ShortType;
+import org.apache.spark.sql.types.StringType;
+import org.apache.spark.sql.types.StructField;
+import org.apache.spark.sql.types.StructType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes Spark rows as framed TFRecords containing a tf.train.Example.
+ * <p>
+ * One encoder is meant to be created per partition and reused for all rows of that partition. The protobuf payload
+ * and the TFRecord framing are written into a single growable buffer, so that encoding a row does not allocate
+ * intermediate messages. Instances are not thread safe.
+ */
+public final class TFRecordEncoder {
+
+  private static final int KIND_BYTES = 1;
+  private static final int KIND_FLOAT = 2;
+  private static final int KIND_INT64 = 3;
+  //tag of a length delimited protobuf field number 1 and 2
+  private static final byte TAG_FIELD_1 = 0x0A;
+  private static final byte TAG_FIELD_2 = 0x12;
+  //uint64 length + masked crc of the length
+  private static final int HEADER_SIZE = 12;
+  private static final int FOOTER_SIZE = 4;
+
+  private final byte[][] names;
+  private final int[] kinds;
+  private final boolean[] lists;
+  private final int[] listSizes;
+  private final int[] featureSizes;
+  private final int[] entrySizes;
+  private final int[] payloadSizes;
+  private final int[] bytesStart;
+  private final int[] bytesEnd;
+  private final List<byte[]> bytesValues = new ArrayList<>();
+  private byte[] buf;
+  private int pos;
+
+  /**
+   * Create an encoder for rows of the given schema.
+   *
+   * @param schema DataFrame schema.
+   * @throws IllegalArgumentException if a column type cannot be represented in a tf.train.Example.
+   */
+  public TFRecordEncoder(StructType schema) {
+    StructField[] fields = schema.fields();
+    names = new byte[fields.length][];
+    kinds = new int[fields.length];
+    lists = new boolean[fields.length];
+    listSizes = new int[fields.length];
+    featureSizes = new int[fields.length];
+    entrySizes = new int[fields.length];
+    payloadSizes = new int[fields.length];
+    bytesStart = new int[fields.length];
+    bytesEnd = new int[fields.length];
+    for (int i = 0; i < fields.length; i++) {
+      DataType type = fields[i].dataType();
+      if (type instanceof ArrayType) {
+        lists[i] = true;
+        type = ((ArrayType) type).elementType();
+      }
+      kinds[i] = kindOf(type);
+      if (kinds[i] < 0) {
+        throw new IllegalArgumentException("Column " + fields[i].name() + " of type " + fields[i].dataType()
+          .simpleString() + " cannot be exported to TFRecord");
+      }
+      names[i] = fields[i].name().getBytes(StandardCharsets.UTF_8);
+    }
+    buf = new byte[4096];
+  }
+
+  private static int kindOf(DataType type) {
+    if (type instanceof IntegerType || type instanceof LongType || type instanceof ShortType
+      || type instanceof ByteType || type instanceof BooleanType) {
+      return KIND_INT64;
+    }
+    if (type instanceof FloatType || type instanceof DoubleType || type instanceof DecimalType) {
+      return KIND_FLOAT;
+    }
+    if (type instanceof StringType || type instanceof BinaryType) {
+      return KIND_BYTES;
+    }
+    return -1;
+  }
+
+  /**
+   * Encode a row and write the framed record to the output stream.
+   *
+   * @param row row with the schema this encoder was created for.
+   * @param out output stream.
+   * @return number of bytes written.
+   * @throws IOException IOException
+   */
+  public int write(Row row, OutputStream out) throws IOException {
+    bytesValues.clear();
+    int featuresSize = 0;
+    for (int i = 0; i < kinds.length; i++) {
+      if (row.isNullAt(i)) {
+        entrySizes[i] = -1;
+        continue;
+      }
+      int listSize;
+      if (kinds[i] == KIND_BYTES) {
+        bytesStart[i] = bytesValues.size();
+        if (lists[i]) {
+          for (Object value : row.getList(i)) {
+            addBytes(value);
+          }
+        } else {
+          addBytes(row.get(i));
+        }
+        bytesEnd[i] = bytesValues.size();
+        listSize = 0;
+        for (int b = bytesStart[i]; b < bytesEnd[i]; b++) {
+          int length = bytesValues.get(b).length;
+          listSize += 1 + varintSize(length) + length;
+        }
+      } else {
+        int payload = 0;
+        if (lists[i]) {
+          for (Object value : row.getList(i)) {
+            payload += packedSize(kinds[i], value);
+          }
+        } else {
+          payload = packedSize(kinds[i], row.get(i));
+        }
+        payloadSizes[i] = payload;
+        listSize = payload == 0 ? 0 : 1 + varintSize(payload) + payload;
+      }
+      listSizes[i] = listSize;
+      featureSizes[i] = 1 + varintSize(listSize) + listSize;
+      entrySizes[i] = 1 + varintSize(names[i].length) + names[i].length
+        + 1 + varintSize(featureSizes[i]) + featureSizes[i];
+      featuresSize += 1 + varintSize(entrySizes[i]) + entrySizes[i];
+    }
+    int exampleSize = 1 + varintSize(featuresSize) + featuresSize;
+    int total = HEADER_SIZE + exampleSize + FOOTER_SIZE;
+    if (buf.length < total) {
+      buf = new byte[Math.max(total, buf.length * 2)];
+    }
+
+    pos = HEADER_SIZE;
+    buf[pos++] = TAG_FIELD_1;
+    writeVarint(featuresSize);
+    for (int i = 0; i < kinds.length; i++) {
+      if (entrySizes[i] < 0) {
+        continue;
+      }
+      buf[pos++] = TAG_FIELD_1;
+      writeVarint(entrySizes[i]);
+      writeBytes(names[i]);
+      buf[pos++] = TAG_FIELD_2;
+      writeVarint(featureSizes[i]);
+      buf[pos++] = (byte) (kinds[i] << 3 | 2);
+      writeVarint(listSizes[i]);
+      if (kinds[i] == KIND_BYTES) {
+        for (int b = bytesStart[i]; b < bytesEnd[i]; b++) {
+          writeBytes(bytesValues.get(b));
+        }
+      } else if (payloadSizes[i] > 0) {
+        buf[pos++] = TAG_FIELD_1;
+        writeVarint(payloadSizes[i]);
+        if (lists[i]) {
+          for (Object value : row.getList(i)) {
+            writePacked(kinds[i], value);
+          }
+        } else {
+          writePacked(kinds[i], row.get(i));
+        }
+      }
+    }
+
+    //TFRecord framing: uint64 length, masked crc32c of length, data, masked crc32c of data
+    long length = exampleSize;
+    for (int b = 0; b < 8; b++) {
+      buf[b] = (byte) (length >>> (8 * b));
+    }
+    pos = 8;
+    writeFixed32(Crc32c.masked(buf, 0, 8));
+    pos = HEADER_SIZE + exampleSize;
+    writeFixed32(Crc32c.masked(buf, HEADER_SIZE, exampleSize));
+    out.write(buf, 0, total);
+    return total;
+  }
+
+  private void addBytes(Object value) {
+    if (value instanceof byte[]) {
+      bytesValues.add((byte[]) value);
+    } else if (value != null) {
+      bytesValues.add(value.toString().getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  private static int packedSize(int kind, Object value) {
+    if (value == null) {
+      return 0;
+    }
+    return kind == KIND_FLOAT ? 4 : varintSize(toLong(value));
+  }
+
+  private void writePacked(int kind, Object value) {
+    if (value == null) {
+      return;
+    }
+    if (kind == KIND_FLOAT) {
+      writeFixed32(Float.floatToIntBits(((Number) value).floatValue()));
+    } else {
+      writeVarint(toLong(value));
+    }
+  }
+
+  private static long toLong(Object value) {
+    if (value instanceof Boolean) {
+      return (Boolean) value ? 1L : 0L;
+    }
+    return ((Number) value).longValue();
+  }
+
+  private static int varintSize(long value) {
+    int size = 1;
+    while ((value & ~0x7FL) != 0) {
+      value >>>= 7;
+      size++;
+    }
+    return size;
+  }
+
+  private void writeVarint(long value) {
+    while ((value & ~0x7FL) != 0) {
+      buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    buf[pos++] = (byte) value;
+  }
+
+  private void writeFixed32(int value) {
+    buf[pos++] = (byte) value;
+    buf[pos++] = (byte) (value >>> 8);
+    buf[pos++] = (byte) (value >>> 16);
+    buf[pos++] = (byte) (value >>> 24);
+  }
+
+  private void writeBytes(byte[] bytes) {
+    buf[pos++] = TAG_FIELD_1;
+    writeVarint(bytes.length);
+    System.arraycopy(bytes, 0, buf, pos, bytes.length);
+    pos += bytes.length;
+  }
+}
@@ -0,0 +1,266 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.util.spark;
+
+import io.hops.util.Constants;
+import io.hops.util.exceptions.DataframeWriteException;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.spark.TaskContext;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.api.java.function.VoidFunction;
+import org.apache.spark.broadcast.Broadcast;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.types.StructType;
+import org.apache.spark.util.LongAccumulator;
+import org.apache.spark.util.SerializableConfiguration;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports a DataFrame as TFRecord files containing tf.train.Example records.
+ * <p>
+ * The number of output files is either set explicitly or derived from a target file size, and can be rounded up to a
+ * multiple of the parallelism of the training input pipeline so that every reader gets the same number of shards.
+ * Each partition is encoded by a single {@link TFRecordEncoder} that reuses its buffers across rows.
+ *
+ * <pre>
+ * TFRecordExport.builder().setDataframe(df).setPath(path).setTargetFileSizeBytes(256L * 1024 * 1024)
+ *   .setReaderParallelism(8).setCompression(TFRecordExport.Compression.GZIP).write();
+ * </pre>
+ */
+public class TFRecordExport {
+
+  private static final Logger LOG = Logger.getLogger(TFRecordExport.class.getName());
+
+  public static final long DEFAULT_TARGET_FILE_SIZE_BYTES = 128L * 1024 * 1024;
+  private static final int OUTPUT_BUFFER_SIZE = 256 * 1024;
+
+  /**
+   * Compression codecs understood by tf.data.TFRecordDataset.
+   */
+  public enum Compression {
+    NONE(""),
+    GZIP(".gz"),
+    ZLIB(".zlib");
+
+    private final String extension;
+
+    Compression(String extension) {
+      this.extension = extension;
+    }
+
+    public String getExtension() {
+      return extension;
+    }
+  }
+
+  private Dataset<Row> dataframe;
+  private String path;
+  private String mode = Constants.SPARK_OVERWRITE_MODE;
+  private String recordType = Constants.SPARK_TF_CONNECTOR_RECORD_TYPE_EXAMPLE;
+  private int numShards;
+  private int readerParallelism = 1;
+  private long targetFileSizeBytes = DEFAULT_TARGET_FILE_SIZE_BYTES;
+  private Compression compression = Compression.NONE;
+
+  private TFRecordExport() {
+  }
+
+  public static TFRecordExport builder() {
+    return new TFRecordExport();
+  }
+
+  /**
+   * Write the DataFrame to the configured path.
+   *
+   * @return number of records written.
+   * @throws DataframeWriteException DataframeWriteException
+   */
+  public long write() throws DataframeWriteException {
+    if (dataframe == null || path == null) {
+      throw new IllegalArgumentException("Dataframe and path must be provided.");
+    }
+    if (!Constants.SPARK_TF_CONNECTOR_RECORD_TYPE_EXAMPLE.equalsIgnoreCase(recordType)) {
+      throw new IllegalArgumentException("Unsupported " + Constants.SPARK_TF_CONNECTOR_RECORD_TYPE + ":" + recordType);
+    }
+    //Fail on the driver for unsupported column types instead of in every task
+    new TFRecordEncoder(dataframe.schema());
+
+    int shards = getNumShards();
+    Dataset<Row> sharded = dataframe.rdd().getNumPartitions() == shards ? dataframe : dataframe.repartition(shards);
+    LOG.log(Level.FINE, "Exporting TFRecords to {0} in {1} shards", new Object[]{path, shards});
+
+    Configuration conf = dataframe.sparkSession().sparkContext().hadoopConfiguration();
+    Path dir = new Path(path);
+    try {
+      FileSystem fs = dir.getFileSystem(conf);
+      if (Constants.SPARK_OVERWRITE_MODE.equalsIgnoreCase(mode)) {
+        fs.delete(dir, true);
+      } else if (!Constants.SPARK_APPEND_MODE.equalsIgnoreCase(mode)) {
+        throw new IllegalArgumentException("Unsupported write mode:" + mode);
+      }
+      fs.mkdirs(dir);
+    } catch (IOException e) {
+      throw new DataframeWriteException("Could not prepare output directory " + path, e);
+    }
+
+    LongAccumulator records = dataframe.sparkSession().sparkContext().longAccumulator("tfrecords");
+    //Unique prefix so appends never clash with files of previous exports
+    String prefix = "part-" + UUID.randomUUID().toString().substring(0, 8);
+    //Executors write with the Hadoop configuration of the job, including its object store credentials and fs settings
+    Broadcast<SerializableConfiguration> hadoopConf = JavaSparkContext.fromSparkContext(
+      dataframe.sparkSession().sparkContext()).broadcast(new SerializableConfiguration(conf));
+    try {
+      sharded.toJavaRDD().foreachPartition(
+        new ShardWriter(path, prefix, dataframe.schema(), compression, records, hadoopConf));
+    } catch (Exception e) {
+      throw new DataframeWriteException("Could not export TFRecords to " + path, e);
+    } finally {
+      hadoopConf.destroy();
+    }
+    return records.value();
+  }
+
+  /**
+   * Number of shards the export will produce.
+   *
+   * @return number of shards.
+   */
+  public int getNumShards() {
+    int shards = numShards;
+    if (shards <= 0) {
+      long size = SparkUtils.estimateSizeInBytes(dataframe);
+      shards = (int) Math.max(1, Math.min(Integer.MAX_VALUE, (size + targetFileSizeBytes - 1) / targetFileSizeBytes));
+    }
+    if (readerParallelism > 1 && shards % readerParallelism != 0) {
+      shards = (shards / readerParallelism + 1) * readerParallelism;
+    }
+    return shards;
+  }
+
+  public TFRecordExport setDataframe(Dataset<Row> dataframe) {
+    this.dataframe = dataframe;
+    return this;
+  }
+
+  /**
+   * Output directory, relative to the project root directory or absolute.
+   *
+   * @param path path
+   * @return this export
+   */
+  public TFRecordExport setPath(String path) {
+    this.path = SparkUtils.getProjectPath(path);
+    return this;
+  }
+
+  public TFRecordExport setMode(String mode) {
+    this.mode = mode;
+    return this;
+  }
+
+  public TFRecordExport setRecordType(String recordType) {
+    this.recordType = recordType;
+    return this;
+  }
+
+  public TFRecordExport setNumShards(int numShards) {
+    this.numShards = numShards;
+    return this;
+  }
+
+  public TFRecordExport setReaderParallelism(int readerParallelism) {
+    this.readerParallelism = readerParallelism;
+    return this;
+  }
+
+  public TFRecordExport setTargetFileSizeBytes(long targetFileSizeBytes) {
+    if (targetFileSizeBytes <= 0) {
+      throw new IllegalArgumentException("Target file size must be positive.");
+    }
+    this.targetFileSizeBytes = targetFileSizeBytes;
+    return this;
+  }
+
+  public TFRecordExport setCompression(Compression compression) {
+    this.compression = compression;
+    return this;
+  }
+
+  private static class ShardWriter implements VoidFunction<Iterator<Row>> {
+
+    private final String path;
+    private final String prefix;
+    private final StructType schema;
+    private final Compression compression;
+    private final LongAccumulator records;
+    private final Broadcast<SerializableConfiguration> hadoopConf;
+
+    ShardWriter(String path, String prefix, StructType schema, Compression compression, LongAccumulator records,
+      Broadcast<SerializableConfiguration> hadoopConf) {
+      this.path = path;
+      this.prefix = prefix;
+      this.schema = schema;
+      this.compression = compression;
+      this.records = records;
+      this.hadoopConf = hadoopConf;
+    }
+
+    @Override
+    public void call(Iterator<Row> rows) throws Exception {
+      if (!rows.hasNext()) {
+        return;
+      }
+      Path file = new Path(path, String.format("%s-%05d.tfrecord%s", prefix, TaskContext.getPartitionId(),
+        compression.getExtension()));
+      FileSystem fs = file.getFileSystem(hadoopConf.value().value());
+      TFRecordEncoder encoder = new TFRecordEncoder(schema);
+      long count = 0;
+      try (OutputStream out = open(fs, file)) {
+        while (rows.hasNext()) {
+          encoder.write(rows.next(), out);
+          count++;
+        }
+      }
+      records.add(count);
+    }
+
+    private OutputStream open(FileSystem fs, Path file) throws IOException {
+      //Task attempts overwrite the output of failed attempts of the same shard
+      OutputStream out = fs.create(file, true);
+      switch (compression) {
+        case GZIP:
+          out = new GZIPOutputStream(out, OUTPUT_BUFFER_SIZE);
+          break;
+        case ZLIB:
+          out = new DeflaterOutputStream(out);
+          break;
+        default:
+          break;
+      }
+      return new BufferedOutputStream(out, OUTPUT_BUFFER_SIZE);
+    }
+  }
+}